@@ -0,0 +1,170 @@
+package sfx;
+
+/**
+ * Headless calculator that prices a spell without any view or controls.
+ * It builds a model with no listeners so only the calculation classes
+ * {model, fields, factories and tables} are used and nothing from Swing or AWT.
+ * Values are set through typed setters and the totals read back, for example
+ *
+ *   SFXCalculator calculator = new SFXCalculator().createCalculator();
+ *   calculator.setEffect(6).setRange(10.0f, 1).setDuration(1.0f, 2);
+ *   int iDN = calculator.getTotalDN();
+ *
+ * Any field not covered by a setter can be reached through getField using
+ * the same names as the model
+ */
+
+public class SFXCalculator
+{
+	private SFXModel m_dataModel = null;
+
+	public SFXCalculator createCalculator()
+	{
+		m_dataModel = new SFXModel();
+		// There is no view to create the fields as it builds the panels so create them all now
+		m_dataModel.createModel().createInstances();
+		return this;
+	}
+
+	public SFXModel getModel()
+	{
+		return m_dataModel;
+	}
+
+	public SFXBase getField(String scField)
+	{
+		return m_dataModel.getField(scField);
+	}
+
+	/* ======================================================================
+	   Mandatory parts of the spell
+	   Values are those shown in the tables and the unit is the index of the
+	   multiplier {e.g. seconds, minutes, hours for time}
+	   ====================================================================== */
+
+	public SFXCalculator setEffect(int iEffect)
+	{
+		getField("Effect").setValue(Integer.toString(iEffect));
+		return this;
+	}
+
+	public SFXCalculator setRange(float fRange, int iUnit)
+	{
+		return setValue("Range", fRange, iUnit);
+	}
+
+	public SFXCalculator setSpeed(float fSpeed, int iUnit)
+	{
+		// Speed follows the range unless set explicitly
+		getField("Speed").setValue("DISABLE");
+		return setValue("Speed", fSpeed, iUnit);
+	}
+
+	public SFXCalculator setDuration(float fDuration, int iUnit)
+	{
+		return setValue("Duration", fDuration, iUnit);
+	}
+
+	public SFXCalculator setCasting(float fCasting, int iUnit)
+	{
+		return setValue("Casting", fCasting, iUnit);
+	}
+
+	/* ======================================================================
+	   Limitations that reduce the cost
+	   A reduction can either reduce the DN or be applied to the FV
+	   ====================================================================== */
+
+	public SFXCalculator setConcentration(float fConcentration, int iUnit, boolean zReduceDN)
+	{
+		setValue("Concentration", fConcentration, iUnit);
+		return setApplication("Concentration", zReduceDN);
+	}
+
+	public SFXCalculator setIncantation(int iIncantation, boolean zReduceDN)
+	{
+		return setChoice("Incantation", iIncantation, zReduceDN);
+	}
+
+	public SFXCalculator setRelatedSkill(int iRelatedSkill, boolean zReduceDN)
+	{
+		return setChoice("RelatedSkill", iRelatedSkill, zReduceDN);
+	}
+
+	public SFXCalculator setOthers(int iReduceDN, int iReduceFV)
+	{
+		SFXBase field = getField("Other");
+		field.setValue(String.format("DN %d", iReduceDN));
+		field.setValue(String.format("FV %d", iReduceFV));
+		return this;
+	}
+
+	/** Disbelief level as a percentage {0, 25, 50 or 75} */
+
+	public SFXCalculator setUnreal(int iDisbelief)
+	{
+		getField("Unreal").setValue(String.format("LEVEL %d", iDisbelief));
+		return this;
+	}
+
+	/** Fraction of the cost taken as DN {the rest is FV} */
+
+	public SFXCalculator setFraction(float fFraction)
+	{
+		getField("Fraction").setValue(Float.toString(fFraction));
+		return this;
+	}
+
+	/* ======================================================================
+	   Results of the calculation
+	   ====================================================================== */
+
+	public int getTotalDN()
+	{
+		return getDouble("Total").getValueDN();
+	}
+
+	public int getTotalFV()
+	{
+		return getDouble("Total").getValueFV();
+	}
+
+	public int getSpecificDN()
+	{
+		return getDouble("Specific").getValueDN();
+	}
+
+	public int getSpecificFV()
+	{
+		return getDouble("Specific").getValueFV();
+	}
+
+	/* ======================================================================
+	   Helpers to set the different kinds of field
+	   ====================================================================== */
+
+	private SFXCalculator setValue(String scField, float fValue, int iUnit)
+	{
+		SFXValue value = (SFXValue)getField(scField);
+		value.setMultiplierIndex(iUnit);
+		value.setValue(Float.toString(fValue));
+		return this;
+	}
+
+	private SFXCalculator setChoice(String scField, int iChoice, boolean zReduceDN)
+	{
+		((SFXValue)getField(scField)).setMultiplierIndex(iChoice);
+		return setApplication(scField, zReduceDN);
+	}
+
+	private SFXCalculator setApplication(String scField, boolean zReduceDN)
+	{
+		getField(scField).setValue(zReduceDN?"DN":"FV");
+		return this;
+	}
+
+	private SFXDouble getDouble(String scField)
+	{
+		return (SFXDouble)getField(scField);
+	}
+}
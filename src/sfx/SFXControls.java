@@ -8,61 +8,67 @@ import java.awt.print.Printable;
 import java.awt.print.PrinterException;
 import java.awt.print.PrinterJob;
 import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
+import java.lang.reflect.InvocationTargetException;
 
 import javax.swing.JComponent;
 import javax.swing.JFileChooser;
 import javax.swing.JOptionPane;
+import javax.swing.SwingUtilities;
 import javax.swing.filechooser.FileFilter;
 
 public class SFXControls implements SFXViewListener
 {
 	private SFXView m_view = null;
 	private JFileChooser m_chooseFile = null;
+	private JFileChooser m_chooseLibrary = null;
+	// Changes to the model are applied by its writer so the Swing thread is not held up
+	private SFXModelWriter m_writer = null;
+	// Changes not saved are kept in the journal {only used on the writer}
+	private SFXModelJournal m_journal = null;
+	// Files are written on a thread of their own so a slow disk does not hold up the writer
+	private SFXModelSaver m_saver = null;
 	
-	private boolean m_zDirty = false;
+	private volatile boolean m_zDirty = false;
 
 	public SFXControls createControls(SFXView view)
 	{
 		m_view = view;
+		m_writer = view.getModel().getWriter();
+		m_saver = new SFXModelSaver().createSaver();
 		m_chooseFile = new JFileChooser();
 		FileFilter filterSFX = new SFXFilter();
 		m_chooseFile.addChoosableFileFilter(filterSFX);
 		m_chooseFile.setFileFilter(filterSFX);
+		m_chooseLibrary = new JFileChooser();
+		FileFilter filterLibrary = new SFXLibraryFilter();
+		m_chooseLibrary.addChoosableFileFilter(filterLibrary);
+		m_chooseLibrary.setFileFilter(filterLibrary);
 		view.addListener(this);
+		
+		// Carry on from the changes of a new model left when the editor was last stopped
+		final SFXModel dataModel = view.getModel();
+		m_writer.submit(new Runnable()
+		{
+			@Override
+			public void run() 
+			{
+				if (recoverJournal(null, dataModel)) startJournal(null, dataModel);
+			}
+		});
 		return this;
 	}
 	
 	@Override
 	public boolean duplicateField(SFXBase field) 
 	{
-		try 
-		{
-			SFXComposite composite = (SFXComposite) field.getParent();
-			Class<? extends SFXBase> classField = field.getClass();
-			SFXBase instanceField = (SFXBase)classField.newInstance();
-			// Internal composition responsibility of parent
-			composite.addField(instanceField);
-		} 
-		catch (InstantiationException x) 
-		{
-			x.printStackTrace();
-			return false;
-		} 
-		catch (IllegalAccessException x) 
-		{
-			x.printStackTrace();
-			return false;
-		}
+		// Internal composition responsibility of parent
+		m_writer.submit(new SFXCommandDuplicate(field));
 		m_zDirty = true;
 		
 		return true;
@@ -72,7 +78,7 @@ public class SFXControls implements SFXViewListener
 	public boolean modifyValue(int iValue, SFXBase field) 
 	{
 		// The field can decide how to change the value
-		field.setValue(iValue);
+		m_writer.submit(new SFXCommandValue(field, iValue));
 		m_zDirty = true;
 		return true;
 	}
@@ -81,7 +87,7 @@ public class SFXControls implements SFXViewListener
 	public boolean modifyValue(String scValue, SFXBase field) 
 	{
 		// The field can decide how to change the value
-		field.setValue(scValue);
+		m_writer.submit(new SFXCommandText(field, scValue));
 		m_zDirty = true;
 		return true;
 	}
@@ -89,8 +95,7 @@ public class SFXControls implements SFXViewListener
 	@Override
 	public boolean modifyMultiplier(int iMultiplier, SFXBase field) 
 	{
-		SFXValue value = (SFXValue) field;
-		value.setMultiplierIndex(iMultiplier);
+		m_writer.submit(new SFXCommandMultiplier(field, iMultiplier));
 		m_zDirty = true;
 		return true;
 	}
@@ -98,8 +103,7 @@ public class SFXControls implements SFXViewListener
 	@Override
 	public boolean removeField(SFXBase field) 
 	{
-		SFXComposite composite = (SFXComposite) field.getParent();
-		composite.removeField(field);
+		m_writer.submit(new SFXCommandRemove(field));
 		m_zDirty = true;
 		return true;
 	}
@@ -110,6 +114,8 @@ public class SFXControls implements SFXViewListener
 		if (actionCommand.equals("New")) return newModel(dataModel);
 		if (actionCommand.equals("Open")) return loadModel(dataModel);
 		if (actionCommand.equals("Save")) return saveModel(dataModel);
+		if (actionCommand.equals("Open from library")) return loadLibrary(dataModel);
+		if (actionCommand.equals("Save into library")) return saveLibrary(dataModel);
 		if (actionCommand.equals("Exit")) return closeModel(dataModel);
 		if (actionCommand.equals("Print")) return printModel(dataModel);
 		if (actionCommand.equals("Push")) return pushModel(dataModel);
@@ -118,45 +124,175 @@ public class SFXControls implements SFXViewListener
 		return true;		
 	}
 	
-	private boolean newModel(SFXModel dataModel) 
+	private boolean newModel(final SFXModel dataModel) 
 	{
 		if (maintainDirty()) return false;
-		SFXModel newModel = new SFXModel();
-		newModel.createModel();
-		dataModel.replaceContent(newModel);
-		// Replacing the model includes adjustment to number of composite fields children so sets dirty
-		m_zDirty = false;
+		
+		dataModel.getWriter().submit(new Runnable()
+		{
+			@Override
+			public void run() 
+			{
+				SFXModel newModel = new SFXModel();
+				newModel.createModel();
+				deleteJournal();
+				dataModel.replaceContent(newModel);
+				// Replacing the model includes adjustment to number of composite fields children so sets dirty
+				m_zDirty = false;
+				startJournal(null, dataModel);
+			}
+		});
 		return true;
 	}
 	
-	private boolean loadModel(SFXModel dataModel) 
+	private boolean loadModel(final SFXModel dataModel) 
 	{
 		if (maintainDirty()) return false;
 		
 		int iOption = m_chooseFile.showOpenDialog(null);
 		if (JFileChooser.APPROVE_OPTION!=iOption) return false;
-		File file = m_chooseFile.getSelectedFile();
+		final File file = m_chooseFile.getSelectedFile();
 		
-		ObjectInputStream objectLoadStream = null;
-		return loadModel(file, objectLoadStream, dataModel);		
+		dataModel.getWriter().submit(new Runnable()
+		{
+			@Override
+			public void run() 
+			{
+				ObjectInputStream objectLoadStream = null;
+				loadModel(file, objectLoadStream, dataModel);
+			}
+		});
+		return true;
 	}
 
-	private boolean saveModel(SFXModel dataModel) 
+	private boolean saveModel(final SFXModel dataModel) 
 	{
 		int iOption = m_chooseFile.showSaveDialog(null);
 		if (JFileChooser.APPROVE_OPTION!=iOption) return false;
-		File file = m_chooseFile.getSelectedFile();
+		final File file = m_chooseFile.getSelectedFile();
+		
+		// Saved by the writer so the fields are not changed while written
+		dataModel.getWriter().submit(new Runnable()
+		{
+			@Override
+			public void run() 
+			{
+				saveModel(file, dataModel);
+			}
+		});
+		return true;
+	}
+	
+	private boolean loadLibrary(final SFXModel dataModel) 
+	{
+		if (maintainDirty()) return false;
+		
+		int iOption = m_chooseLibrary.showOpenDialog(null);
+		if (JFileChooser.APPROVE_OPTION!=iOption) return false;
+		
+		// Only the index is read to list the spells
+		final SFXModelLibrary library;
+		try 
+		{
+			library = new SFXModelLibrary().openLibrary(m_chooseLibrary.getSelectedFile());
+		} 
+		catch (IOException x) 
+		{
+			x.printStackTrace();
+			return false;
+		}
+		
+		Object[] aoNames = library.getNames().toArray();
+		if (0==aoNames.length) return false;
+		
+		final Object oName = JOptionPane.showInputDialog(null, "Spell to open", "Open from library", 
+				JOptionPane.PLAIN_MESSAGE, null, aoNames, aoNames[0]);
+		if (null==oName) return false;
+		
+		dataModel.getWriter().submit(new Runnable()
+		{
+			@Override
+			public void run() 
+			{
+				loadModel(library, (String) oName, dataModel);
+			}
+		});
+		return true;
+	}
+	
+	private boolean saveLibrary(final SFXModel dataModel) 
+	{
+		int iOption = m_chooseLibrary.showSaveDialog(null);
+		if (JFileChooser.APPROVE_OPTION!=iOption) return false;
+		final File file = m_chooseLibrary.getSelectedFile();
 		
-		ObjectOutputStream objectSaveStream = null;
-		return saveModel(file, objectSaveStream, dataModel);		
+		// Saved by the writer so the fields are not changed while written
+		dataModel.getWriter().submit(new Runnable()
+		{
+			@Override
+			public void run() 
+			{
+				saveLibrary(file, dataModel);
+			}
+		});
+		return true;
 	}
 	
 	private boolean closeModel(SFXModel dataModel) 
 	{
 		if (maintainDirty()) return false;
-		System.exit(0);
+		
+		// Once the changes before are applied the saves they made are waited for off the writer
+		final SFXModelWriter writer = dataModel.getWriter();
+		writer.submit(new Runnable()
+		{
+			@Override
+			public void run() 
+			{
+				new Thread(new Runnable()
+				{
+					@Override
+					public void run() 
+					{
+						if (m_saver.waitSaves()) writer.submit(exitModel());
+						else keepModel();
+					}
+				}, "SFX model close").start();
+			}
+		});
 		return false;
 	}
+	
+	// Run on the writer after what the saves told it so the journal is not needed
+	private Runnable exitModel()
+	{
+		return new Runnable()
+		{
+			@Override
+			public void run() 
+			{
+				// A save that failed has told the user and left the design to be saved again
+				if (m_zDirty) return;
+				
+				deleteJournal();
+				System.exit(0);
+			}
+		};
+	}
+	
+	// A save still being written {or the wait stopped} so the editor stays open with the journal kept
+	private void keepModel()
+	{
+		SwingUtilities.invokeLater(new Runnable()
+		{
+			@Override
+			public void run() 
+			{
+				JOptionPane.showMessageDialog(null, "The design is still being saved so the editor has not closed\nExit again once it is saved", 
+						"Not closed!", JOptionPane.WARNING_MESSAGE);
+			}
+		});
+	}
 
 	private boolean printModel(SFXModel dataModel) 
 	{
@@ -201,35 +337,42 @@ public class SFXControls implements SFXViewListener
 		return true;
 	}
 	
-	private boolean pushModel(SFXModel dataModel) 
+	private boolean pushModel(final SFXModel dataModel) 
+	{
+		// Copied by the writer so the fields are not changed while copied
+		dataModel.getWriter().submit(new Runnable()
+		{
+			@Override
+			public void run() 
+			{
+				copyModel(dataModel);
+			}
+		});
+		return true;
+	}
+	
+	private boolean copyModel(SFXModel dataModel) 
 	{
 		try 
 		{
-			// Create a model correctly to make sure non-serialized fields are available
-			SFXModel dataReturn = new SFXModel();
-			dataReturn.createModel();
+			// The copy has its own fields wired the same as the model so is ready for the tab as it is
+			final SFXModel dataPush = dataModel.copy();
 			
-			// Take a copy of the data model using serialization
-			ByteArrayOutputStream byteOutputStream = new ByteArrayOutputStream();
-			ObjectOutputStream objectOutputStream = new ObjectOutputStream(byteOutputStream);
-			objectOutputStream.writeObject(dataModel);
- 
-	        //De-serialization of object
-	        ByteArrayInputStream byteInputStream = new   ByteArrayInputStream(byteOutputStream.toByteArray());
-	        ObjectInputStream objectInputStream = new ObjectInputStream(byteInputStream);
-	        SFXModel dataPush = (SFXModel) objectInputStream.readObject();
-	        
 			// Create a new tab
-	        m_view.createTab(dataReturn);
-	        
-	        // Take the serialized fields from the cloned class - updates the view
-	        dataReturn.replaceContent(dataPush);	        
+	        SwingUtilities.invokeAndWait(new Runnable()
+	        {
+				@Override
+				public void run() 
+				{
+					m_view.createTab(dataPush);
+				}
+	        });
 		} 
-		catch (IOException x) 
+		catch (InvocationTargetException x) 
 		{
 			x.printStackTrace();
-		} 
-		catch (ClassNotFoundException x) 
+		}
+		catch (InterruptedException x) 
 		{
 			x.printStackTrace();
 		}
@@ -237,16 +380,23 @@ public class SFXControls implements SFXViewListener
 		return true;
 	}
 	
-	private boolean pullModel(SFXModel dataModel) 
+	private boolean pullModel(final SFXModel dataModel) 
 	{
 		if (maintainDirty()) return false;
 		
 		// Find selected model data
-		SFXModel dataPull = m_view.removeTab();
+		final SFXModel dataPull = m_view.removeTab();
 		if (null==dataPull) return false;
 		
 		// Pull back from stored data
-		dataModel.replaceContent(dataPull);
+		dataModel.getWriter().submit(new Runnable()
+		{
+			@Override
+			public void run() 
+			{
+				dataModel.replaceContent(dataPull);
+			}
+		});
 		
 		return true;
 	}
@@ -260,17 +410,32 @@ public class SFXControls implements SFXViewListener
 	
 	private boolean loadModel(File file, ObjectInputStream objectLoadStream, SFXModel dataModel) 
 	{
+		BufferedInputStream bufferLoadStream = null;
+		
 		try 
 		{
 			FileInputStream fileLoadStream = new FileInputStream(file);
-			BufferedInputStream bufferLoadStream = new BufferedInputStream(fileLoadStream);
+			bufferLoadStream = new BufferedInputStream(fileLoadStream);
+			SFXModel loadModel;
 			
-			objectLoadStream = new ObjectInputStream(bufferLoadStream);
-			SFXModel loadModel = (SFXModel)objectLoadStream.readObject();
+			if (SFXModelFile.isModelFile(bufferLoadStream))
+			{
+				loadModel = SFXModelFile.readModel(bufferLoadStream);
+			}
+			else
+			{
+				// Saved before the model file form
+				objectLoadStream = new ObjectInputStream(bufferLoadStream);
+				loadModel = (SFXModel)objectLoadStream.readObject();
+			}
 			
+			deleteJournal();
 			dataModel.replaceContent(loadModel);
 			//Replacing the model includes adjustment to number of composite fields children so sets dirty
 			m_zDirty = false;
+			
+			// Carry on from the changes left when the editor was stopped before they were saved
+			if (recoverJournal(file, dataModel)) startJournal(file, dataModel);
 		} 
 		catch (FileNotFoundException x) 
 		{
@@ -284,49 +449,243 @@ public class SFXControls implements SFXViewListener
 		{
 			x.printStackTrace();
 		}
+		finally
+		{
+			// Closed however the read ended {closing the object stream closes the file too}
+			closeStream(null!=objectLoadStream?objectLoadStream:bufferLoadStream);
+		}
+		
+		return false;
+	}
+
+	private static boolean closeStream(InputStream stream)
+	{
+		if (null==stream) return false;
 		
 		try 
 		{
-			if (null!=objectLoadStream) objectLoadStream.close();
+			stream.close();
 		} 
 		catch (IOException x) 
 		{
 			x.printStackTrace();
 		}
 		
-		return false;
+		return true;
+	}
+	
+	private boolean saveModel(File file, SFXModel dataModel)
+	{
+		// The changes after this are kept in the journal beside the file
+		SFXSaveListener listenerSave = restartJournal(file, dataModel);
+		
+		try 
+		{
+			m_saver.saveModel(dataModel, file, listenerSave);
+		} 
+		catch (IOException x) 
+		{
+			listenerSave.failedSave(file, x);
+			return false;
+		}
+		
+		return true;
+	}
+	
+	private boolean loadModel(SFXModelLibrary library, String scName, SFXModel dataModel) 
+	{
+		try 
+		{
+			SFXModel loadModel = library.readModel(scName);
+			
+			deleteJournal();
+			dataModel.replaceContent(loadModel);
+			m_zDirty = false;
+			startJournal(null, dataModel);
+		} 
+		catch (IOException x) 
+		{
+			x.printStackTrace();
+			return false;
+		}
+		
+		return true;
+	}
+	
+	private boolean saveLibrary(File fileLibrary, SFXModel dataModel) 
+	{
+		SFXSaveListener listenerSave = restartJournal(null, dataModel);
+		
+		try 
+		{
+			m_saver.saveLibrary(dataModel, fileLibrary, listenerSave);
+		} 
+		catch (IOException x) 
+		{
+			listenerSave.failedSave(fileLibrary, x);
+			return false;
+		}
+		
+		return true;
 	}
+	
+	/** Keep the journal of the changes after a save {the journal before is removed once the save is written} */
+	
+	private SFXSaveListener restartJournal(File file, final SFXModel dataModel)
+	{
+		final File fileJournalSaved = null==m_journal?null:m_journal.getFile();
+		closeJournal();
+		startJournal(file, dataModel);
+		m_zDirty = false;
+		
+		return new SFXSaveListener()
+		{
+			@Override
+			public boolean savedModel(File fileSaved) 
+			{
+				dataModel.getWriter().submit(new Runnable()
+				{
+					@Override
+					public void run() 
+					{
+						deleteJournal(fileJournalSaved);
+					}
+				});
+				return true;
+			}
 
-	private boolean saveModel(File file, ObjectOutputStream objectSaveStream, SFXModel dataModel)
+			@Override
+			public boolean failedSave(final File fileSaved, final IOException x) 
+			{
+				// The journal before is left so the changes can still be recovered
+				m_zDirty = true;
+				x.printStackTrace();
+				
+				SwingUtilities.invokeLater(new Runnable()
+				{
+					@Override
+					public void run() 
+					{
+						JOptionPane.showMessageDialog(null, "The design could not be saved to " + fileSaved + "\n" + x.getMessage(), 
+								"Not saved!", JOptionPane.ERROR_MESSAGE);
+					}
+				});
+				return true;
+			}
+		};
+	}
+	
+	/** Carry on from the journal left {false when a journal that could not be read is still in the way of a new one} */
+	
+	private boolean recoverJournal(File file, SFXModel dataModel)
 	{
+		File fileJournal = SFXModelJournal.getJournalFile(file);
+		
 		try 
 		{
-			FileOutputStream fileSaveStream = new FileOutputStream(file);
-			BufferedOutputStream bufferSaveStream = new BufferedOutputStream(fileSaveStream);
+			SFXModel recoverModel = SFXModelJournal.readJournal(fileJournal);
+			if (null==recoverModel) return true;
 			
-			objectSaveStream = new ObjectOutputStream(bufferSaveStream);
-			objectSaveStream.writeObject(dataModel);
+			dataModel.replaceContent(recoverModel);
+			m_zDirty = true;
 		} 
-		catch (FileNotFoundException x) 
+		catch (IOException x) 
 		{
+			// Kept beside so the next journal does not write over the changes it holds
 			x.printStackTrace();
+			File fileKept = SFXModelJournal.keepJournal(fileJournal);
+			
+			showFailure("The changes kept in " + fileJournal + " could not be recovered\n" + x.getMessage() + "\n"
+					+ (null==fileKept?"It is left as it is and the changes from now on are not kept":"It is kept as " + fileKept), "Not recovered!");
+			return null!=fileKept;
+		}
+		
+		return true;
+	}
+	
+	private boolean startJournal(File file, SFXModel dataModel)
+	{
+		// Changes that cannot be written are told once until they can be again
+		SFXSaveListener listenerJournal = new SFXSaveListener()
+		{
+			@Override
+			public boolean savedModel(File fileJournal) 
+			{
+				return true;
+			}
+			
+			@Override
+			public boolean failedSave(File fileJournal, IOException x) 
+			{
+				x.printStackTrace();
+				showFailure("The changes could not be kept in " + fileJournal + "\n" + x.getMessage(), "Not kept!");
+				return true;
+			}
+		};
+		
+		try 
+		{
+			m_journal = new SFXModelJournal().createJournal(dataModel, SFXModelJournal.getJournalFile(file), listenerJournal);
 		} 
 		catch (IOException x) 
 		{
 			x.printStackTrace();
+			return false;
 		}
 		
+		return true;
+	}
+	
+	private static void showFailure(final String scMessage, final String scTitle)
+	{
+		SwingUtilities.invokeLater(new Runnable()
+		{
+			@Override
+			public void run() 
+			{
+				JOptionPane.showMessageDialog(null, scMessage, scTitle, JOptionPane.ERROR_MESSAGE);
+			}
+		});
+	}
+	
+	private boolean deleteJournal()
+	{
+		if (null==m_journal) return false;
+		
 		try 
 		{
-			if (null!=objectSaveStream) objectSaveStream.close();
+			m_journal.delete();
 		} 
 		catch (IOException x) 
 		{
 			x.printStackTrace();
 		}
 		
-		m_zDirty = false;
+		m_journal = null;
+		return true;
+	}
+	
+	private boolean deleteJournal(File fileJournal)
+	{
+		// Unless the journal now kept has written over it since
+		if (null==fileJournal || null!=m_journal && m_journal.getFile().equals(fileJournal) && m_journal.isWritten()) return false;
+		return fileJournal.delete();
+	}
+	
+	private boolean closeJournal()
+	{
+		if (null==m_journal) return false;
+		
+		try 
+		{
+			m_journal.close();
+		} 
+		catch (IOException x) 
+		{
+			x.printStackTrace();
+		}
 		
+		m_journal = null;
 		return true;
 	}
 	
@@ -363,3 +722,19 @@ class SFXFilter extends FileFilter
 		return "Just SFX files";
 	}
 }
+
+class SFXLibraryFilter extends FileFilter
+{
+	@Override
+	public boolean accept(File fileCheck) 
+	{
+		if (fileCheck.isDirectory()) return true;
+		return fileCheck.getName().toLowerCase().endsWith("sfxl");
+	}
+
+	@Override
+	public String getDescription() 
+	{
+		return "SFX spell libraries";
+	}
+}
@@ -0,0 +1,653 @@
+package sfx;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compiled form of the calculation behind the totals of a model.
+ * The fields the totals are calculated from are read from the wired model
+ * {sources of the calculated fields and contents of the composites} and turned
+ * into a flat program over an int state vector.  Each field has a block of
+ * three slots COST, DN and FV.
+ *
+ * The calculated fields {mandatory, optional, modifiers, totals ...} become
+ * instructions run in order so sources come before the fields using them.
+ * All other fields are inputs whose values are loaded from the model and
+ * can then be changed in the state to price variations of the spell.
+ * Evaluating the program does not create any objects so many states can be
+ * evaluated quickly; the model stays as the front end for editing.
+ *
+ * An input field is loaded as its cost {which for some fields already
+ * includes values from other fields e.g. multi target with area}, so a variation
+ * setting such a field needs to set the cost of each affected input.
+ * The program follows the fields in the model when compiled so needs
+ * compiling again if fields are added to or removed from a composite.
+ *
+ * Many variations can be priced at once with evaluateColumns which takes a
+ * column of values for each input slot swept and gives a column of each
+ * result slot {e.g. the mandatory, optional and totals}.  evaluateIndexes
+ * takes columns of the table entries and units of the fields instead and
+ * prices them through the tables of each field first.
+ */
+
+public class SFXEngine
+{
+	// Slots held for each field
+	public static final int _COST = 0;
+	public static final int _DN = 1; // Also the switch for maintenance and focus and fraction per mille
+	public static final int _FV = 2; // Also the reduction of a modifier
+	private static final int _SLOTS = 3;
+
+	// Instructions {each followed by the slot calculated, the count of sources and the source slots}
+	private static final int _LOAD = 0;
+	private static final int _SUM = 1;
+	private static final int _HALF = 2;
+	private static final int _MANDATORY = 3;
+	private static final int _MAINTENANCE = 4;
+	private static final int _FOCUS = 5;
+	private static final int _MODIFIERS = 6;
+	private static final int _TOTAL = 7;
+	private static final int _TOTALN = 8;
+
+	// Rows evaluated together by evaluateColumns
+	private static final int _BLOCK = 256;
+
+	private Map<SFXBase, Integer> m_mapSlots = null;
+	private List<SFXBase> m_listInputs = null;
+	private int[] m_aiInputs = null;
+	private int[] m_aiProgram = null;
+	private int m_iSlots = 0;
+	private int m_iTotal = 0;
+	private int m_iSpecific = 0;
+
+	public SFXEngine createEngine(SFXModel dataModel)
+	{
+		m_mapSlots = new HashMap<SFXBase, Integer>();
+		m_listInputs = new ArrayList<SFXBase>();
+		m_iSlots = 0;
+
+		List<Integer> listProgram = new ArrayList<Integer>();
+		m_iTotal = compileField(dataModel.getField("Total"), listProgram);
+		m_iSpecific = compileField(dataModel.getField("Specific"), listProgram);
+
+		m_aiProgram = new int[listProgram.size()];
+		for (int iIndex = 0; iIndex<m_aiProgram.length; ++iIndex)
+			m_aiProgram[iIndex] = listProgram.get(iIndex);
+
+		m_aiInputs = new int[m_listInputs.size()];
+		for (int iIndex = 0; iIndex<m_aiInputs.length; ++iIndex)
+			m_aiInputs[iIndex] = m_mapSlots.get(m_listInputs.get(iIndex));
+
+		return this;
+	}
+
+	/* ======================================================================
+	   State of a spell
+	   ====================================================================== */
+
+	public int[] createState()
+	{
+		return new int[m_iSlots];
+	}
+
+	/** Slots of a field {-1 if the totals do not use the field} */
+
+	public int getSlot(SFXBase field)
+	{
+		Integer iSlot = m_mapSlots.get(field);
+		if (null==iSlot) return -1;
+		return iSlot;
+	}
+
+	/** Set the cost of an input field */
+
+	public int[] setCost(int[] aiState, SFXBase field, int iCost)
+	{
+		int iSlot = getSlot(field);
+		aiState[iSlot + _COST] = iCost;
+		aiState[iSlot + _DN] = iCost;
+		return aiState;
+	}
+
+	/** Copy the values of the input fields from the model into the state */
+
+	public int[] loadState(int[] aiState)
+	{
+		for (int iIndex = 0; iIndex<m_aiInputs.length; ++iIndex)
+			loadField(m_listInputs.get(iIndex), aiState, m_aiInputs[iIndex]);
+		return aiState;
+	}
+
+	public int getTotalDN(int[] aiState)
+	{
+		return aiState[m_iTotal + _DN];
+	}
+
+	public int getTotalFV(int[] aiState)
+	{
+		return aiState[m_iTotal + _FV];
+	}
+
+	public int getSpecificDN(int[] aiState)
+	{
+		return aiState[m_iSpecific + _DN];
+	}
+
+	public int getSpecificFV(int[] aiState)
+	{
+		return aiState[m_iSpecific + _FV];
+	}
+
+	/* ======================================================================
+	   Evaluate the program for a state
+	   The calculations are the same as the updateValue/getCost of the fields
+	   ====================================================================== */
+
+	public int[] evaluate(int[] aiState)
+	{
+		int[] aiProgram = m_aiProgram;
+		int iStep = 0;
+
+		while (iStep<aiProgram.length)
+		{
+			int iOperation = aiProgram[iStep++];
+			int iSlot = aiProgram[iStep++];
+			int iSources = aiProgram[iStep++];
+			int iFirst = iStep;
+			iStep += iSources;
+
+			switch (iOperation)
+			{
+			case _SUM:
+			{
+				int iCost = 0;
+				int iReduction = 0;
+				for (int iIndex = iFirst; iIndex<iStep; ++iIndex)
+				{
+					iCost += aiState[aiProgram[iIndex] + _COST];
+					iReduction += aiState[aiProgram[iIndex] + _FV];
+				}
+				aiState[iSlot + _COST] = iCost;
+				aiState[iSlot + _DN] = iCost;
+				aiState[iSlot + _FV] = iReduction;
+				break;
+			}
+			case _HALF:
+			{
+				// Round down?
+				aiState[iSlot + _COST] = getSum(aiState, aiProgram, iFirst, iStep) / 2;
+				break;
+			}
+			case _MANDATORY:
+			{
+				int iMandatory = aiState[aiProgram[iFirst] + _COST];
+				int iCasting = aiState[aiProgram[iFirst + 1] + _COST];
+				int iHalf = aiState[aiProgram[iFirst + 2] + _COST];
+
+				int iLimited = iMandatory - iCasting;
+				iLimited = iLimited<iHalf?iHalf:iLimited;
+
+				aiState[iSlot + _COST] = iLimited;
+				break;
+			}
+			case _MAINTENANCE:
+			{
+				int iCost = 0;
+				if (0!=aiState[iSlot + _DN]) iCost = 10 * getSum(aiState, aiProgram, iFirst, iStep) / 100;
+				aiState[iSlot + _COST] = iCost;
+				break;
+			}
+			case _FOCUS:
+			{
+				int iCost = 0;
+				if (0!=aiState[iSlot + _DN]) iCost = (getSum(aiState, aiProgram, iFirst, iStep) + 4) / 5;
+				aiState[iSlot + _COST] = iCost;
+				break;
+			}
+			case _MODIFIERS:
+			{
+				evaluateModifiers(aiState, aiProgram, iSlot, iFirst);
+				break;
+			}
+			case _TOTAL:
+			{
+				int iMandatory = aiState[aiProgram[iFirst] + _COST];
+				int iOptional = aiState[aiProgram[iFirst + 1] + _COST];
+				evaluateTotal(aiState, iSlot, iMandatory + iOptional, aiProgram[iFirst + 2], aiProgram[iFirst + 3]);
+				break;
+			}
+			case _TOTALN:
+			{
+				int iMandatory = aiState[aiProgram[iFirst] + _COST];
+				int iOptional = aiState[aiProgram[iFirst + 1] + _COST];
+
+				// Value of lock is not a reduction {all the others are}
+				int iCost = -aiState[aiProgram[iFirst + 4] + _COST];
+				for (int iIndex = iFirst + 5; iIndex<iStep; ++iIndex)
+					iCost += aiState[aiProgram[iIndex] + _COST];
+
+				evaluateTotal(aiState, iSlot, iMandatory + iOptional - iCost, aiProgram[iFirst + 2], aiProgram[iFirst + 3]);
+				break;
+			}
+			}
+		}
+
+		return aiState;
+	}
+
+	private void evaluateModifiers(int[] aiState, int[] aiProgram, int iSlot, int iFirst)
+	{
+		// Mandatory, optional and fraction are only used for the limits which are not part of the totals
+		int iIndex = iFirst + 3;
+
+		// Community, components, concentration, gestures, incantation, related skill and others
+		int iReduceDN = 0;
+		int iReduceFV = 0;
+		for (int iReduce = 0; iReduce<7; ++iReduce)
+		{
+			iReduceDN += aiState[aiProgram[iIndex] + _DN];
+			iReduceFV += aiState[aiProgram[iIndex++] + _FV];
+		}
+
+		int iUnreal = aiProgram[iIndex];
+		int iTotal = aiState[iUnreal + _COST];
+		int iUnrealDN = getFraction(aiState[iUnreal + _DN], iTotal);
+		iReduceDN += iUnrealDN;
+		iReduceFV += iTotal - iUnrealDN;
+
+		setValue(aiState, iSlot, iReduceDN, iReduceFV);
+	}
+
+	private void evaluateTotal(int[] aiState, int iSlot, int iCost, int iFraction, int iModifiers)
+	{
+		int iCostDN = getFraction(aiState[iFraction + _DN], iCost);
+		int iCostFV = iCost - iCostDN;
+
+		int iValueDN = iCostDN - aiState[iModifiers + _DN];
+		int iValueFV = iCostFV - aiState[iModifiers + _FV];
+
+		setValue(aiState, iSlot, iValueDN>0?iValueDN:0, iValueFV>0?iValueFV:0);
+	}
+
+	private static void setValue(int[] aiState, int iSlot, int iValueDN, int iValueFV)
+	{
+		aiState[iSlot + _COST] = iValueDN + iValueFV;
+		aiState[iSlot + _DN] = iValueDN;
+		aiState[iSlot + _FV] = iValueFV;
+	}
+
+	private static int getSum(int[] aiState, int[] aiProgram, int iFirst, int iLast)
+	{
+		int iSum = 0;
+		for (int iIndex = iFirst; iIndex<iLast; ++iIndex)
+			iSum += aiState[aiProgram[iIndex] + _COST];
+		return iSum;
+	}
+
+	/** Same rounding as SFXFraction.getCost */
+
+	private static int getFraction(int iFraction, int iValue)
+	{
+		return SFXFraction.getShare(iFraction, iValue);
+	}
+
+	/* ======================================================================
+	   Evaluate the program for columns of states
+	   The rows are taken a block at a time with each slot holding the block
+	   so each instruction is one simple loop over the rows {which the JIT
+	   can turn into vector instructions} rather than run once for each row.
+	   The calculations are the same as evaluate
+	   ====================================================================== */
+
+	/**
+	 * Price every row of the columns of inputs e.g. to sweep the costs of
+	 * effect, range, duration and casting.  Each column is the value of the
+	 * input slot given for each row {a _COST slot is set with its _DN as
+	 * setCost does, any other slot e.g. the _DN of the fraction is set as it
+	 * is} and all the other inputs are as in the state.  Returns a column of
+	 * each result slot {e.g. getSlot(mandatory) + _COST} for the rows
+	 */
+
+	public int[][] evaluateColumns(int[] aiState, int[] aiInputSlots, int[][] aaiInputs, int[] aiResultSlots)
+	{
+		int iRows = 0==aaiInputs.length?1:aaiInputs[0].length;
+		int[][] aaiResults = new int[aiResultSlots.length][iRows];
+
+		int[][] aaiBlock = new int[m_iSlots][_BLOCK];
+		for (int iSlot = 0; iSlot<m_iSlots; ++iSlot)
+			Arrays.fill(aaiBlock[iSlot], aiState[iSlot]);
+
+		for (int iRow = 0; iRow<iRows; iRow += _BLOCK)
+		{
+			int iCount = Math.min(_BLOCK, iRows - iRow);
+
+			for (int iInput = 0; iInput<aiInputSlots.length; ++iInput)
+			{
+				int iSlot = aiInputSlots[iInput];
+				System.arraycopy(aaiInputs[iInput], iRow, aaiBlock[iSlot], 0, iCount);
+				if (_COST==iSlot % _SLOTS) System.arraycopy(aaiInputs[iInput], iRow, aaiBlock[iSlot + _DN], 0, iCount);
+			}
+
+			evaluateBlock(aaiBlock, iCount);
+
+			for (int iResult = 0; iResult<aiResultSlots.length; ++iResult)
+				System.arraycopy(aaiBlock[aiResultSlots[iResult]], 0, aaiResults[iResult], iRow, iCount);
+		}
+
+		return aaiResults;
+	}
+
+	/**
+	 * Price every row of the columns of field indexes e.g. to sweep the
+	 * entries and units of range, duration and casting.  Each input field is
+	 * priced by its own index as its getCost does: a value by the entry of its
+	 * SFXTable and the offset of the unit of its SFXTableMultiplier {a null
+	 * column of units keeps the unit of the field}, a scalar {effect} by its
+	 * value.  Fields priced from other fields {speed following range, multi
+	 * target with area, area of effect ...} are turned down as the cost of an
+	 * index alone is not theirs, and the fields priced from a field swept are
+	 * left as in the state.  The costs are then evaluated as evaluateColumns
+	 */
+
+	public int[][] evaluateIndexes(int[] aiState, SFXBase[] afieldInputs, int[][] aaiEntries, int[][] aaiUnits, int[] aiResultSlots)
+	{
+		int[] aiInputSlots = new int[afieldInputs.length];
+		int[][] aaiCosts = new int[afieldInputs.length][];
+
+		for (int iInput = 0; iInput<afieldInputs.length; ++iInput)
+		{
+			SFXBase field = afieldInputs[iInput];
+			if (!m_listInputs.contains(field)) throw new RuntimeException("Not an input " + field);
+
+			aiInputSlots[iInput] = getSlot(field) + _COST;
+			aaiCosts[iInput] = getCosts(field, aaiEntries[iInput], null==aaiUnits?null:aaiUnits[iInput]);
+		}
+
+		return evaluateColumns(aiState, aiInputSlots, aaiCosts, aiResultSlots);
+	}
+
+	/** Cost of each row of a field with the entries and units given {the tables are looked up once for each entry and unit met} */
+
+	private static int[] getCosts(SFXBase field, int[] aiEntries, int[] aiUnits)
+	{
+		int[] aiCosts = new int[aiEntries.length];
+
+		if (SFXScalar.class==field.getClass())
+		{
+			for (int iRow = 0; iRow<aiEntries.length; ++iRow)
+			{
+				if (0>aiEntries[iRow]) throw new RuntimeException("Value " + aiEntries[iRow] + " out of range for " + field);
+				aiCosts[iRow] = aiEntries[iRow];
+			}
+			return aiCosts;
+		}
+
+		if (SFXValue.class!=field.getClass()) throw new RuntimeException("Not priced by its own index " + field);
+
+		SFXValue value = (SFXValue)field;
+		SFXTable table = value.m_Table;
+		SFXTableMultiplier multiplier = value.m_Multiplier;
+
+		int[] aiEntryCosts = new int[table.getSize()];
+		boolean[] azEntries = new boolean[aiEntryCosts.length];
+		int[] aiOffsets = new int[multiplier.getContent().length];
+		boolean[] azUnits = new boolean[aiOffsets.length];
+
+		for (int iRow = 0; iRow<aiEntries.length; ++iRow)
+		{
+			int iEntry = aiEntries[iRow];
+			int iUnit = null==aiUnits?value.getMultiplierIndex():aiUnits[iRow];
+			if (table.outRange(iEntry)) throw new RuntimeException("Entry " + iEntry + " out of range for " + field);
+			if (multiplier.outRange(iUnit)) throw new RuntimeException("Unit " + iUnit + " out of range for " + field);
+
+			if (!azEntries[iEntry])
+			{
+				aiEntryCosts[iEntry] = table.getCost(iEntry);
+				azEntries[iEntry] = true;
+			}
+
+			if (!azUnits[iUnit])
+			{
+				aiOffsets[iUnit] = multiplier.getOffset(iUnit);
+				azUnits[iUnit] = true;
+			}
+
+			aiCosts[iRow] = aiOffsets[iUnit] + aiEntryCosts[iEntry];
+		}
+
+		return aiCosts;
+	}
+
+	private void evaluateBlock(int[][] aaiState, int iRows)
+	{
+		int[] aiProgram = m_aiProgram;
+		int iStep = 0;
+
+		while (iStep<aiProgram.length)
+		{
+			int iOperation = aiProgram[iStep++];
+			int iSlot = aiProgram[iStep++];
+			int iSources = aiProgram[iStep++];
+			int iFirst = iStep;
+			iStep += iSources;
+
+			int[] aiCost = aaiState[iSlot + _COST];
+			int[] aiDN = aaiState[iSlot + _DN];
+			int[] aiFV = aaiState[iSlot + _FV];
+
+			switch (iOperation)
+			{
+			case _SUM:
+			{
+				getSum(aaiState, aiProgram, iFirst, iStep, _COST, aiCost, iRows);
+				getSum(aaiState, aiProgram, iFirst, iStep, _FV, aiFV, iRows);
+				System.arraycopy(aiCost, 0, aiDN, 0, iRows);
+				break;
+			}
+			case _HALF:
+			{
+				getSum(aaiState, aiProgram, iFirst, iStep, _COST, aiCost, iRows);
+				for (int iRow = 0; iRow<iRows; ++iRow)
+					aiCost[iRow] /= 2;
+				break;
+			}
+			case _MANDATORY:
+			{
+				int[] aiMandatory = aaiState[aiProgram[iFirst] + _COST];
+				int[] aiCasting = aaiState[aiProgram[iFirst + 1] + _COST];
+				int[] aiHalf = aaiState[aiProgram[iFirst + 2] + _COST];
+
+				for (int iRow = 0; iRow<iRows; ++iRow)
+				{
+					int iLimited = aiMandatory[iRow] - aiCasting[iRow];
+					aiCost[iRow] = iLimited<aiHalf[iRow]?aiHalf[iRow]:iLimited;
+				}
+				break;
+			}
+			case _MAINTENANCE:
+			{
+				getSum(aaiState, aiProgram, iFirst, iStep, _COST, aiCost, iRows);
+				for (int iRow = 0; iRow<iRows; ++iRow)
+					aiCost[iRow] = 0!=aiDN[iRow]?10 * aiCost[iRow] / 100:0;
+				break;
+			}
+			case _FOCUS:
+			{
+				getSum(aaiState, aiProgram, iFirst, iStep, _COST, aiCost, iRows);
+				for (int iRow = 0; iRow<iRows; ++iRow)
+					aiCost[iRow] = 0!=aiDN[iRow]?(aiCost[iRow] + 4) / 5:0;
+				break;
+			}
+			case _MODIFIERS:
+			{
+				// Community, components, concentration, gestures, incantation, related skill and others
+				getSum(aaiState, aiProgram, iFirst + 3, iFirst + 10, _DN, aiDN, iRows);
+				getSum(aaiState, aiProgram, iFirst + 3, iFirst + 10, _FV, aiFV, iRows);
+
+				int[] aiUnreal = aaiState[aiProgram[iFirst + 10] + _COST];
+				int[] aiFraction = aaiState[aiProgram[iFirst + 10] + _DN];
+
+				for (int iRow = 0; iRow<iRows; ++iRow)
+				{
+					int iUnrealDN = getFraction(aiFraction[iRow], aiUnreal[iRow]);
+					aiDN[iRow] += iUnrealDN;
+					aiFV[iRow] += aiUnreal[iRow] - iUnrealDN;
+					aiCost[iRow] = aiDN[iRow] + aiFV[iRow];
+				}
+				break;
+			}
+			case _TOTAL:
+			{
+				int[] aiMandatory = aaiState[aiProgram[iFirst] + _COST];
+				int[] aiOptional = aaiState[aiProgram[iFirst + 1] + _COST];
+
+				for (int iRow = 0; iRow<iRows; ++iRow)
+					aiCost[iRow] = aiMandatory[iRow] + aiOptional[iRow];
+
+				evaluateTotal(aaiState, iSlot, aiProgram[iFirst + 2], aiProgram[iFirst + 3], iRows);
+				break;
+			}
+			case _TOTALN:
+			{
+				int[] aiMandatory = aaiState[aiProgram[iFirst] + _COST];
+				int[] aiOptional = aaiState[aiProgram[iFirst + 1] + _COST];
+				int[] aiLock = aaiState[aiProgram[iFirst + 4] + _COST];
+
+				// Value of lock is not a reduction {all the others are}
+				getSum(aaiState, aiProgram, iFirst + 5, iStep, _COST, aiCost, iRows);
+				for (int iRow = 0; iRow<iRows; ++iRow)
+					aiCost[iRow] = aiMandatory[iRow] + aiOptional[iRow] - (aiCost[iRow] - aiLock[iRow]);
+
+				evaluateTotal(aaiState, iSlot, aiProgram[iFirst + 2], aiProgram[iFirst + 3], iRows);
+				break;
+			}
+			}
+		}
+	}
+
+	// The cost of the total is already in its slot
+	private static void evaluateTotal(int[][] aaiState, int iSlot, int iFraction, int iModifiers, int iRows)
+	{
+		int[] aiCost = aaiState[iSlot + _COST];
+		int[] aiDN = aaiState[iSlot + _DN];
+		int[] aiFV = aaiState[iSlot + _FV];
+		int[] aiFraction = aaiState[iFraction + _DN];
+		int[] aiModifiersDN = aaiState[iModifiers + _DN];
+		int[] aiModifiersFV = aaiState[iModifiers + _FV];
+
+		for (int iRow = 0; iRow<iRows; ++iRow)
+		{
+			int iCostDN = getFraction(aiFraction[iRow], aiCost[iRow]);
+			int iValueDN = iCostDN - aiModifiersDN[iRow];
+			int iValueFV = aiCost[iRow] - iCostDN - aiModifiersFV[iRow];
+
+			iValueDN = iValueDN>0?iValueDN:0;
+			iValueFV = iValueFV>0?iValueFV:0;
+
+			aiCost[iRow] = iValueDN + iValueFV;
+			aiDN[iRow] = iValueDN;
+			aiFV[iRow] = iValueFV;
+		}
+	}
+
+	private static void getSum(int[][] aaiState, int[] aiProgram, int iFirst, int iLast, int iOffset, int[] aiSum, int iRows)
+	{
+		Arrays.fill(aiSum, 0, iRows, 0);
+		for (int iIndex = iFirst; iIndex<iLast; ++iIndex)
+		{
+			int[] aiSource = aaiState[aiProgram[iIndex] + iOffset];
+			for (int iRow = 0; iRow<iRows; ++iRow)
+				aiSum[iRow] += aiSource[iRow];
+		}
+	}
+
+	/* ======================================================================
+	   Compile the fields into slots and instructions
+	   ====================================================================== */
+
+	private int compileField(SFXBase field, List<Integer> listProgram)
+	{
+		Integer iExisting = m_mapSlots.get(field);
+		if (null!=iExisting) return iExisting;
+
+		int iSlot = m_iSlots;
+		m_iSlots += _SLOTS;
+		m_mapSlots.put(field, iSlot);
+
+		int iOperation = getOperation(field);
+		if (_LOAD==iOperation)
+		{
+			m_listInputs.add(field);
+			return iSlot;
+		}
+
+		// Sources are compiled first so their instructions come before this one
+		List<SFXBase> listSources = getSources(field);
+		int[] aiSources = new int[listSources.size()];
+		for (int iIndex = 0; iIndex<aiSources.length; ++iIndex)
+			aiSources[iIndex] = compileField(listSources.get(iIndex), listProgram);
+
+		listProgram.add(iOperation);
+		listProgram.add(iSlot);
+		listProgram.add(aiSources.length);
+		for (int iSource : aiSources) listProgram.add(iSource);
+
+		// Switch for maintenance or focus is an input
+		if (_MAINTENANCE==iOperation || _FOCUS==iOperation) m_listInputs.add(field);
+
+		return iSlot;
+	}
+
+	private static int getOperation(SFXBase field)
+	{
+		if (field instanceof SFXFieldHalfMandatory) return _HALF;
+		if (field instanceof SFXFieldSubMandatory) return _SUM;
+		if (field instanceof SFXFieldMandatory) return _MANDATORY;
+		if (field instanceof SFXFieldMaintenance) return _MAINTENANCE;
+		if (field instanceof SFXFieldFocus) return _FOCUS;
+		if (field instanceof SFXFieldOptional) return _SUM;
+		if (field instanceof SFXFieldModifiers) return _MODIFIERS;
+		if (field instanceof SFXFieldTotal) return _TOTAL;
+		if (field instanceof SFXFieldTotalN) return _TOTALN;
+		if (field instanceof SFXComposite) return _SUM;
+		return _LOAD;
+	}
+
+	private static List<SFXBase> getSources(SFXBase field)
+	{
+		if (field instanceof SFXComposite) return ((SFXComposite)field).getComposition();
+		return ((SFXCalculated)field).m_listSource;
+	}
+
+	private static void loadField(SFXBase field, int[] aiState, int iSlot)
+	{
+		if (field instanceof SFXFieldMaintenance || field instanceof SFXFieldFocus)
+		{
+			aiState[iSlot + _DN] = ((SFXScalar)field).getIndex();
+			return;
+		}
+
+		aiState[iSlot + _COST] = field.getCost();
+		aiState[iSlot + _DN] = field.getCost();
+		aiState[iSlot + _FV] = 0;
+
+		if (field instanceof SFXFraction)
+		{
+			// The fraction per mille exactly as the field has it
+			aiState[iSlot + _DN] = ((SFXFraction)field).getFraction();
+		}
+		else if (field instanceof SFXDouble)
+		{
+			SFXDouble fieldDouble = (SFXDouble)field;
+			aiState[iSlot + _DN] = fieldDouble.getValueDN();
+			aiState[iSlot + _FV] = fieldDouble.getValueFV();
+		}
+		else if (field instanceof SFXValueModifier)
+		{
+			aiState[iSlot + _FV] = ((SFXValueModifier)field).getReduction();
+		}
+	}
+}
@@ -1,8 +1,14 @@
 package sfx;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.ListIterator;
+import java.util.Map;
 import java.util.concurrent.CopyOnWriteArrayList;
 
 public interface SFXField
@@ -18,15 +24,14 @@ public interface SFXField
 	 * So the whole life cycle goes something like this:
 	 * Field A control sent by view
 	 * Control 'setValue' of A 
-	 * Model 'propagateChange' for A value
-	 *    This 'updateValue' of B which is dependent
-	 *    Model 'propagateChange' value for B
-	 *    Model 'changedValue' for B to inform listeners of field change
-	 *    View hears change B
-	 *    View 'getValue' for B
-	 * Model 'changedValue' for A
-	 * View hears change A
-	 * View 'getValue' for field A
+	 * Model 'propagateChange' for A value starts a change wave
+	 *    Wave orders the dependents of A so sources come before the fields using them
+	 *    Wave 'updateValue' of B which is dependent {once only for the wave}
+	 *    Model 'propagateChange' value for B adds the dependents of B to the wave
+	 *    Model 'changedValue' for B is held by the wave
+	 * Wave finishes and informs listeners once for each of A, B ...
+	 * View hears change A and B
+	 * View 'getValue' for field A and B which are now all up to date
 	 */
 	
 	/** Get the field value as a string (so easily shown no matter what) */
@@ -47,7 +52,7 @@ public interface SFXField
 
 /** Basic outline of a field provide skeleton implementations*/
 
-class SFXBase implements SFXField, Serializable 
+class SFXBase implements SFXField, Serializable, Cloneable
 {
 	private static final long serialVersionUID = 7360923345843001413L;
 
@@ -110,6 +115,13 @@ class SFXBase implements SFXField, Serializable
 	
 	@Override
 	public SFXField changedField()
+	{
+		// During a change wave the listeners are told when the wave has finished
+		if (SFXChangeWave.changedField(this)) return this;
+		return informListeners();
+	}
+	
+	protected SFXField informListeners()
 	{
 		for (SFXModelListener listener : m_listFieldListeners) listener.changedField(this);
 		return this;
@@ -147,10 +159,75 @@ class SFXBase implements SFXField, Serializable
 	{
 		//System.out.println(String.format("Propagate %s as %s", m_scField, getValue()));
 		
-		// Getting value forces recalculation of fields which then sets a new value
-		for (SFXField field : m_listDependents)
-			field.updateValue();
-		return changedField();
+		// The change wave updates the dependents in order so each is recalculated once
+		SFXChangeWave.propagateChange(this);
+		return this;
+	}
+	
+	/* ======================================================================
+	   House rules change the tables the fields read their values from.  
+	   Only fields with tables are changed and they propagate the change so
+	   just their dependents are recalculated
+	   ====================================================================== */
+	
+	public SFXBase setRules(SFXRules rules)
+	{
+		return this;
+	}
+	
+	/* ======================================================================
+	   Copy the field for another model.  The copy is a clone with the 
+	   references to other fields replaced by their copies so the fields in
+	   the new model are wired the same as the original
+	   ====================================================================== */
+	
+	protected SFXBase createCopy(SFXCopy copy)
+	{
+		try 
+		{
+			SFXBase field = (SFXBase)clone();
+			// Recorded before the references are copied since the fields refer to each other
+			copy.putField(this, field);
+			field.copyReferences(copy);
+			return field;
+		} 
+		catch (CloneNotSupportedException x) 
+		{
+			throw new RuntimeException(x);
+		}
+	}
+	
+	/** Called on the clone to replace references it still shares with the original */
+	
+	protected void copyReferences(SFXCopy copy)
+	{
+		m_listDependents = copy.getFields(m_listDependents);
+		m_fieldParent = copy.getField(m_fieldParent);
+		m_listFieldListeners = copy.getListeners();
+	}
+	
+	/* ======================================================================
+	   Saving the field {see SFXModelFile}.  Each field writes what the user
+	   can set after what its super class writes and reads it back in the
+	   same order into a field made by the factories
+	   ====================================================================== */
+	
+	protected void writeField(SFXFieldOutput output) throws IOException
+	{
+		// The name of a plain field is its value {e.g. the name of the spell}
+		output.writeText(m_scField);
+	}
+	
+	protected void readField(SFXFieldInput input) throws IOException
+	{
+		m_scField = input.readText();
+	}
+	
+	/** False for a field the factories calculate from others {it writes nothing and is calculated again once read} */
+	
+	protected boolean isSaved()
+	{
+		return true;
 	}
 	
 	/* ======================================================================
@@ -180,6 +257,57 @@ class SFXBase implements SFXField, Serializable
 	}
 }
 
+/** Holds the copies made of the fields of a model so each field is copied once
+ * and references between fields are replaced by references between the copies */
+
+class SFXCopy
+{
+	private Map<SFXBase, SFXBase> m_mapCopies = new IdentityHashMap<SFXBase, SFXBase>();
+	private List<SFXModelListener> m_listListeners = null;
+	
+	public SFXCopy(List<SFXModelListener> listListeners)
+	{
+		m_listListeners = listListeners;
+	}
+	
+	public List<SFXModelListener> getListeners()
+	{
+		return m_listListeners;
+	}
+	
+	@SuppressWarnings("unchecked")
+	public <T extends SFXBase> T getField(T field)
+	{
+		if (null==field) return null;
+		
+		SFXBase fieldCopy = m_mapCopies.get(field);
+		if (null==fieldCopy) fieldCopy = field.createCopy(this);
+		
+		// Clone is the same class as the original
+		return (T)fieldCopy;
+	}
+	
+	/** The copy already made of the field {null if there is none} */
+	
+	@SuppressWarnings("unchecked")
+	public <T extends SFXBase> T findField(T field)
+	{
+		return (T)m_mapCopies.get(field);
+	}
+	
+	public List<SFXBase> getFields(List<SFXBase> listFields)
+	{
+		List<SFXBase> listCopies = new CopyOnWriteArrayList<SFXBase>();
+		for (SFXBase field : listFields) listCopies.add(getField(field));
+		return listCopies;
+	}
+	
+	protected void putField(SFXBase field, SFXBase fieldCopy)
+	{
+		m_mapCopies.put(field, fieldCopy);
+	}
+}
+
 /** A scalar field has a value where the cost is simply the value 
  * The value set is a delta on the current value if set with a value
  * Or the content of a string if set explicitly
@@ -240,6 +368,19 @@ class SFXScalar extends SFXBase
 	{
 		return String.format("%s (%s) (%d)", m_scField, getValue(), getCost());
 	}
+	
+	// The name is given by the factory so only the value is saved
+	@Override
+	protected void writeField(SFXFieldOutput output) throws IOException
+	{
+		output.writeNumber(m_iValue);
+	}
+	
+	@Override
+	protected void readField(SFXFieldInput input) throws IOException
+	{
+		m_iValue = input.readNumber();
+	}
 }
 
 /** A calculated field is a simple value like the scalar but the value is just set */
@@ -250,6 +391,10 @@ class SFXCalculated extends SFXScalar
 
 	protected List<SFXBase> m_listSource = null;
 	
+	// Sum of the costs of the sources kept until the field is changed or updated
+	private transient int m_iSourceCost = 0;
+	private transient boolean m_zSourceCost = false;
+	
 	@Override
 	public SFXBase createField(String scField)
 	{
@@ -265,6 +410,27 @@ class SFXCalculated extends SFXScalar
 		return propagateChange();
 	}	
 	
+	@Override
+	public SFXField propagateChange()
+	{
+		// Either set or updated because a source has changed
+		m_zSourceCost = false;
+		return super.propagateChange();
+	}
+	
+	protected int getSourceCost()
+	{
+		if (m_zSourceCost) return m_iSourceCost;
+		
+		int iCost = 0;
+		for (SFXBase field : m_listSource)
+			iCost += field.getCost();
+		
+		m_iSourceCost = iCost;
+		m_zSourceCost = true;
+		return iCost;
+	}
+	
 	@Override
 	public SFXBase addDepends(SFXBase fieldDepends)
 	{
@@ -286,6 +452,28 @@ class SFXCalculated extends SFXScalar
 	{
 		return String.format("%s (%d)", m_scField, m_iValue);
 	}
+	
+	@Override
+	protected void copyReferences(SFXCopy copy)
+	{
+		super.copyReferences(copy);
+		m_listSource = copy.getFields(m_listSource);
+	}
+	
+	// Only the value of a field the user sets {e.g. a flag} is saved
+	@Override
+	protected void writeField(SFXFieldOutput output) throws IOException
+	{
+		if (isSaved()) super.writeField(output);
+	}
+	
+	@Override
+	protected void readField(SFXFieldInput input) throws IOException
+	{
+		// The sources are read too so their costs are added up again
+		if (isSaved()) super.readField(input);
+		m_zSourceCost = false;
+	}
 }
 
 /** A double value has separate calculate values for DN and FV */
@@ -336,6 +524,22 @@ class SFXDouble extends SFXCalculated
 	{
 		return String.format("%s (%d/%d)", m_scField, m_iValueDN, m_iValueFV);
 	}
+	
+	@Override
+	protected void writeField(SFXFieldOutput output) throws IOException
+	{
+		super.writeField(output);
+		if (isSaved()) output.writeNumber(m_iValueDN).writeNumber(m_iValueFV);
+	}
+	
+	@Override
+	protected void readField(SFXFieldInput input) throws IOException
+	{
+		super.readField(input);
+		if (!isSaved()) return;
+		m_iValueDN = input.readNumber();
+		m_iValueFV = input.readNumber();
+	}
 }
 
 /** A fractional field has a float value and includes a default which sets the fraction to a specific value */
@@ -344,14 +548,26 @@ class SFXFraction extends SFXBase
 {
 	private static final long serialVersionUID = -1382929882032852833L;
 
-	private float m_fValue = 0.5f;
-	private float m_fDefault = 0.5f;
+	// Fractions are held as whole parts per mille so the shares are worked out exactly
+	public static final int _WHOLE = 1000;
+	private static final int _HALF = _WHOLE / 2;
+	
+	private int m_iFraction = _HALF;
+	private int m_iDefault = _HALF;
 	private boolean m_zDefault = false;
 	
+	// Saved as floats so files saved before the fraction was held per mille can still be read
+	private static final ObjectStreamField[] serialPersistentFields = 
+	{
+		new ObjectStreamField("m_fValue", Float.TYPE),
+		new ObjectStreamField("m_fDefault", Float.TYPE),
+		new ObjectStreamField("m_zDefault", Boolean.TYPE),
+	};
+	
 	@Override
 	public String getValue()
 	{
-		return Float.toString(m_fValue);
+		return Float.toString((float)m_iFraction / _WHOLE);
 	}
 	
 	@Override
@@ -360,7 +576,7 @@ class SFXFraction extends SFXBase
 		if (scValue.startsWith("DEFAULT"))
 		{
 			m_zDefault = true;
-			m_fValue = m_fDefault;
+			m_iFraction = m_iDefault;
 			return propagateChange();
 		}
 		
@@ -370,9 +586,9 @@ class SFXFraction extends SFXBase
 			return propagateChange();
 		}
 		
-		float fValue = Float.parseFloat(scValue);
-		if (m_zDefault) fValue = m_fDefault;
-		m_fValue = fValue;
+		int iFraction = getFraction(Float.parseFloat(scValue));
+		if (m_zDefault) iFraction = m_iDefault;
+		m_iFraction = iFraction;
 		
 		return propagateChange();
 	}
@@ -384,9 +600,27 @@ class SFXFraction extends SFXBase
 	
 	public int getCost(int iValue)
 	{
-		float fReturn = m_fValue * iValue;
-		fReturn += 0.5;
-		return (int)fReturn;
+		return getShare(m_iFraction, iValue);
+	}
+	
+	/** The fraction in parts per mille */
+	
+	public int getFraction()
+	{
+		return m_iFraction;
+	}
+	
+	/** Share of the value for the fraction {per mille} with a half added then cut towards zero as the shares always have been */
+	
+	public static int getShare(int iFraction, int iValue)
+	{
+		// Division cuts towards zero just as the cast of the float did {so a share below zero is not rounded down}
+		return (iFraction * iValue + _HALF) / _WHOLE;
+	}
+	
+	private static int getFraction(float fValue)
+	{
+		return Math.round(fValue * _WHOLE);
 	}
 
 	@Override
@@ -394,6 +628,37 @@ class SFXFraction extends SFXBase
 	{
 		return String.format("%s (%s) (%d/%d)", m_scField, getValue(), getCost(100), 100-getCost(100));
 	}
+	
+	private void writeObject(ObjectOutputStream stream) throws IOException
+	{
+		ObjectOutputStream.PutField fields = stream.putFields();
+		fields.put("m_fValue", (float)m_iFraction / _WHOLE);
+		fields.put("m_fDefault", (float)m_iDefault / _WHOLE);
+		fields.put("m_zDefault", m_zDefault);
+		stream.writeFields();
+	}
+	
+	private void readObject(ObjectInputStream stream) throws IOException, ClassNotFoundException
+	{
+		ObjectInputStream.GetField fields = stream.readFields();
+		m_iFraction = getFraction(fields.get("m_fValue", 0.5f));
+		m_iDefault = getFraction(fields.get("m_fDefault", 0.5f));
+		m_zDefault = fields.get("m_zDefault", false);
+	}
+	
+	@Override
+	protected void writeField(SFXFieldOutput output) throws IOException
+	{
+		output.writeNumber(m_iFraction).writeNumber(m_iDefault).writeFlag(m_zDefault);
+	}
+	
+	@Override
+	protected void readField(SFXFieldInput input) throws IOException
+	{
+		m_iFraction = input.readNumber();
+		m_iDefault = input.readNumber();
+		m_zDefault = input.readFlag();
+	}
 }
 
 /** A value field has a difference between the value and the cost and also includes a cost multiplier */
@@ -403,7 +668,8 @@ class SFXValue extends SFXScalar
 	private static final long serialVersionUID = -6816232194531430215L;
 
 	protected SFXTable m_Table = null;
-	protected SFXTableMultiplier m_Multiplier = null;
+	protected SFXTableMultiplier m_Multiplier = null; // Shared by all fields using the same units
+	protected int m_iMultiplier = 0;
 	
 	/** Value obtained from table entry
 	 * The value is used for the table entry
@@ -412,8 +678,7 @@ class SFXValue extends SFXScalar
 	@Override
 	public String getValue()
 	{
-		float fValue = m_Table.getValue(m_iValue);
-		return Float.toString(fValue);
+		return m_Table.getValueText(m_iValue);
 	}
 
 	/** Setting the value must take into account the table range */
@@ -447,7 +712,7 @@ class SFXValue extends SFXScalar
 	@Override
 	public int getCost() 
 	{
-		return m_Multiplier.getOffset() + m_Table.getCost(m_iValue);
+		return m_Multiplier.getOffset(m_iMultiplier) + m_Table.getCost(m_iValue);
 	}
 	
 	/* ======================================================================
@@ -475,7 +740,7 @@ class SFXValue extends SFXScalar
 	
 	public String getUnit()
 	{
-		return m_Multiplier.getName();
+		return m_Multiplier.getName(m_iMultiplier);
 	}
 	
 	public String[] getMultiplierContent()
@@ -486,20 +751,61 @@ class SFXValue extends SFXScalar
 
 	public int getMultiplierIndex() 
 	{
-		return m_Multiplier.getIndex();
+		return m_iMultiplier;
 	}
 	
 	public SFXField setMultiplierIndex(int iMultiplier) 
 	{
-		m_Multiplier.setIndex(iMultiplier);
+		if (!m_Multiplier.outRange(iMultiplier)) m_iMultiplier = iMultiplier;
 		return propagateChange();
 	}
 	
+	@Override
+	public SFXBase setRules(SFXRules rules)
+	{
+		if (null==m_Table || null==m_Multiplier) return this;
+		
+		SFXTable table = SFXTable.getTable(m_Table.getClass(), m_Table.getSize(), rules);
+		SFXTableMultiplier multiplier = SFXTableMultiplier.getMultiplier(m_Multiplier.getClass(), rules);
+		if (table==m_Table && multiplier==m_Multiplier) return this;
+		
+		m_Table = table;
+		m_Multiplier = multiplier;
+		// The rules may have fewer units
+		if (m_Multiplier.outRange(m_iMultiplier)) m_iMultiplier = 0;
+		propagateChange();
+		return this;
+	}
+	
 	@Override
 	public String toString()
 	{
 		return String.format("%s (%s %s) (%d)", m_scField, getValue(), getUnit(), getCost());
 	}
+	
+	private void readObject(ObjectInputStream stream) throws IOException, ClassNotFoundException
+	{
+		stream.defaultReadObject();
+		
+		// Files saved when each field had its own multiplier hold the index in the multiplier
+		if (0==m_iMultiplier) m_iMultiplier = m_Multiplier.getSavedIndex();
+		m_Multiplier = SFXTableMultiplier.getMultiplier(m_Multiplier.getClass());
+	}
+	
+	// The table and units are given by the factory so only the units chosen are saved
+	@Override
+	protected void writeField(SFXFieldOutput output) throws IOException
+	{
+		super.writeField(output);
+		output.writeNumber(m_iMultiplier);
+	}
+	
+	@Override
+	protected void readField(SFXFieldInput input) throws IOException
+	{
+		super.readField(input);
+		m_iMultiplier = input.readNumber();
+	}
 }
 
 /** A value modifier is the same as a value but there is a boolean to determine if
@@ -557,6 +863,22 @@ class SFXValueModifier extends SFXValue
 	{
 		return m_scComment;
 	}
+	
+	@Override
+	protected void writeField(SFXFieldOutput output) throws IOException
+	{
+		super.writeField(output);
+		output.writeFlag(m_zReduce);
+	}
+	
+	@Override
+	protected void readField(SFXFieldInput input) throws IOException
+	{
+		super.readField(input);
+		m_zReduce = input.readFlag();
+		// The comment is worked out again from the value {the change is sent when the model is read}
+		propagateChange();
+	}
 }
 
 /** A value follower has a boolean flag to indicate if the value of this field follows another field
@@ -634,6 +956,27 @@ class SFXValueFollows extends SFXValue
 		m_zDefault = zDefault;
 		return setValue(0);
 	}
+	
+	@Override
+	protected void copyReferences(SFXCopy copy)
+	{
+		super.copyReferences(copy);
+		m_follows = copy.getField(m_follows);
+	}
+	
+	@Override
+	protected void writeField(SFXFieldOutput output) throws IOException
+	{
+		super.writeField(output);
+		output.writeFlag(m_zDefault);
+	}
+	
+	@Override
+	protected void readField(SFXFieldInput input) throws IOException
+	{
+		super.readField(input);
+		m_zDefault = input.readFlag();
+	}
 }
 
 class SFXCompositeAction implements Serializable
@@ -651,6 +994,12 @@ class SFXComposite extends SFXBase
 	private static final long serialVersionUID = -442406473146546941L;
 	
 	private List<SFXBase> m_listFields = null;
+	// Rules for the fields added {null for the standard rules}
+	private transient SFXRules m_rules = null;
+	
+	// Sum of the costs of the contained fields kept until one of them changes
+	private transient int m_iCost = 0;
+	private transient boolean m_zCost = false;
 	
 	public SFXCompositeAction performAction(SFXCompositeAction action)
 	{
@@ -672,11 +1021,30 @@ class SFXComposite extends SFXBase
 	@Override
 	public int getCost()
 	{
+		if (m_zCost) return m_iCost;
+		
 		int iCost = 0;
 		for (SFXBase field : m_listFields) iCost += field.getCost();
+		
+		m_iCost = iCost;
+		m_zCost = true;
 		return iCost;		
 	}
 	
+	/** A contained field has changed {or been removed} so the cost is added up again when next needed */
+	
+	@Override
+	public SFXField updateValue()
+	{
+		resetCost();
+		return super.updateValue();
+	}
+	
+	protected void resetCost()
+	{
+		m_zCost = false;
+	}
+	
 	public SFXBase addField(SFXBase field)
 	{
 		// Makes parent dependent on children
@@ -685,6 +1053,8 @@ class SFXComposite extends SFXBase
 		field.setParent(this);
 		// Adds the child to the parent list of children 
 		m_listFields.add(field);
+		// Keep the sum of the costs with the new child
+		if (m_zCost) m_iCost += field.getCost();
 		// Sets the listeners for the child
 		field.addListeners(m_listFieldListeners);
 		
@@ -714,6 +1084,73 @@ class SFXComposite extends SFXBase
 	{
 		return m_listFields;
 	}
+	
+	@Override
+	public SFXBase setRules(SFXRules rules)
+	{
+		m_rules = rules;
+		for (SFXBase field : m_listFields) field.setRules(rules);
+		return this;
+	}
+	
+	protected SFXRules getRules()
+	{
+		return null==m_rules?SFXRules.getRules():m_rules;
+	}
+	
+	@Override
+	protected void copyReferences(SFXCopy copy)
+	{
+		super.copyReferences(copy);
+		m_listFields = copy.getFields(m_listFields);
+	}
+	
+	// The contained fields are saved with their class so those added by the user are made again
+	@Override
+	protected void writeField(SFXFieldOutput output) throws IOException
+	{
+		output.writeNumber(m_listFields.size());
+		
+		SFXBase fieldBefore = null;
+		for (SFXBase field : m_listFields) 
+		{
+			output.writeContent(field, fieldBefore);
+			fieldBefore = field;
+		}
+	}
+	
+	@Override
+	protected void readField(SFXFieldInput input) throws IOException
+	{
+		int iFields = input.readNumber();
+		Class<? extends SFXBase> classField = null;
+		
+		for (int iIndex = 0; iIndex<iFields; ++iIndex)
+		{
+			Class<? extends SFXBase> classContent = input.readContent();
+			if (null!=classContent) classField = classContent;
+			if (null==classField) throw new IOException("No class for the fields in " + m_scField);
+			
+			if (iIndex==m_listFields.size())
+			{
+				try
+				{
+					addField(classField.getDeclaredConstructor().newInstance());
+				}
+				catch (ReflectiveOperationException x)
+				{
+					throw new RuntimeException(x);
+				}
+			}
+			
+			SFXBase field = m_listFields.get(iIndex);
+			if (field.getClass()!=classField) throw new IOException("Field " + classField.getSimpleName() + " in " + m_scField);
+			field.readField(input);
+		}
+		
+		while (iFields<m_listFields.size()) removeField(m_listFields.get(m_listFields.size() - 1));
+		resetCost();
+	}
 }
 
 /* ==========================================================================
@@ -741,6 +1178,12 @@ class SFXFieldSubMandatory extends SFXCalculated
 				
 		return iPoints;		
 	}
+
+	@Override
+	protected boolean isSaved()
+	{
+		return false;
+	}
 }
 
 class SFXFieldHalfMandatory extends SFXFieldSubMandatory
@@ -774,6 +1217,12 @@ class SFXFieldMandatory extends SFXCalculated
 		
 		return setValue(iLimited);
 	}	
+
+	@Override
+	protected boolean isSaved()
+	{
+		return false;
+	}
 }
 
 class SFXCompositeArea extends SFXComposite
@@ -793,7 +1242,7 @@ class SFXCompositeArea extends SFXComposite
 		
 		SFXFieldShape valueShape = new SFXFieldShape();
 		valueShape.createField("Shape").addListeners(m_listFieldListeners);
-		valueShape.setTable(tableDefault).setMultiplierTable(new SFXShape()).setValue(0);
+		valueShape.setTable(tableDefault).setMultiplierTable(SFXTableMultiplier.getMultiplier(SFXShape.class)).setValue(0);
 		addField(valueShape);
 		
 		scalarArea.addDepends(scalarVolume).addDepends(valueShape);
@@ -921,19 +1370,22 @@ class SFXFieldMultiTarget extends SFXScalar
 		if (0<iArea) return m_iValue * 6; // Cost doubles if area of effect too
 		return m_iValue * 3;
 	}						
+	
+	@Override
+	protected void copyReferences(SFXCopy copy)
+	{
+		super.copyReferences(copy);
+		m_fieldArea = copy.getField(m_fieldArea);
+	}
 }
 
 class SFXMultiAttribute extends SFXTableMultiplier
 {
 	private static final long serialVersionUID = -7807733172775605647L;
 
-	private static final int[] sm_aiShapeOffsets = {0, 3, 6, 9, 12, 15, 18, 21};
-	private static final String[] sm_scShapeNames = {"unset", "TWO attributes", "three", "four", "five", "six", "seven", "ALL"};
-	
 	public SFXMultiAttribute()
 	{
-		m_aiOffsets = sm_aiShapeOffsets;
-		m_scNames = sm_scShapeNames;
+		super("MultiAttribute");
 	}
 }
 
@@ -999,6 +1451,15 @@ class SFXFieldChangeTarget extends SFXScalar
 		double dfValue = m_iValue * 5 * dfMultiplier;
 		return (int)Math.ceil(dfValue);
 	}						
+	
+	@Override
+	protected void copyReferences(SFXCopy copy)
+	{
+		super.copyReferences(copy);
+		m_fieldArea = copy.getField(m_fieldArea);
+		m_scalarTarget = copy.getField(m_scalarTarget);
+		m_valueAttributes = copy.getField(m_valueAttributes);
+	}
 }
 
 class SFXFieldVariableEffect extends SFXScalar
@@ -1023,12 +1484,12 @@ class SFXFieldVariableDuration extends SFXComposite
 		
 		SFXValue valueSwitch = new SFXValue();
 		valueSwitch.createField("Switch").addListeners(m_listFieldListeners);
-		valueSwitch.setTable(SFXTable.getDefaultValueTable()).setMultiplierTable(new SFXSwitch()).setValue(0);
+		valueSwitch.setTable(SFXTable.getDefaultValueTable()).setMultiplierTable(SFXTableMultiplier.getMultiplier(SFXSwitch.class)).setValue(0);
 		addField(valueSwitch);
 		
 		SFXValue valueShape = new SFXValue();
 		valueShape.createField("Extend").addListeners(m_listFieldListeners);
-		valueShape.setTable(SFXTable.getDefaultValueTable()).setMultiplierTable(new SFXTime()).setValue(0);
+		valueShape.setTable(SFXTable.getDefaultValueTable()).setMultiplierTable(SFXTableMultiplier.getMultiplier(SFXTime.class)).setValue(0);
 		addField(valueShape);
 		
 		// Set dependency on contained fields so other fields can be dependent on composite
@@ -1055,7 +1516,7 @@ class SFXFieldApportation extends SFXComposite
 		
 		SFXValueMove valueMove = new SFXValueMove();
 		valueMove.createField("Move").addListeners(m_listFieldListeners);
-		valueMove.setTable(SFXTable.getDefaultValueTable()).setMultiplierTable(new SFXWeight());
+		valueMove.setTable(SFXTable.getDefaultValueTable()).setMultiplierTable(SFXTableMultiplier.getMultiplier(SFXWeight.class));
 		valueMove.setDefault(false);
 		addField(valueMove);
 		
@@ -1082,12 +1543,14 @@ class SFXValueMove extends SFXValueFollows
 	private static final long serialVersionUID = -5472123173116604843L;
 	private List<SFXBase> m_listSource = null;
 	private SFXSpeed m_tableSpeed = null;
+	// Made on the change wave when the effect changes so the view only looks up the speeds
+	private transient volatile SFXMoveGrid m_grid = null;
 	
 	@Override
 	public SFXBase createField(String scField)
 	{
 		m_listSource = new CopyOnWriteArrayList<SFXBase>();
-		m_tableSpeed = new SFXSpeed();
+		m_tableSpeed = SFXTableMultiplier.getMultiplier(SFXSpeed.class);
 		return super.createField(scField);
 	}
 	
@@ -1105,9 +1568,18 @@ class SFXValueMove extends SFXValueFollows
 	public SFXField updateValue()
 	{
 		// Does not follow the effect field - value not changed though cost will so propogate change
+		updateGrid();
 		return propagateChange();
 	}
 	
+	@Override
+	public SFXValueFollows setFollows(SFXScalar follows)
+	{
+		super.setFollows(follows);
+		updateGrid();
+		return this;
+	}
+	
 	@Override
 	public int getCost()
 	{
@@ -1137,21 +1609,89 @@ class SFXValueMove extends SFXValueFollows
 		return m_tableSpeed.getContent();
 	}
 	
-	public int getDeltaEffectMassCost(float fTry, int iOffsetMass) 
+	/** Speed in the units for the weight {-1 when the speed units cost too much and -2 when the table is not large enough} */
+	
+	public float getMove(int iMassUnit, int iMoveUnit)
+	{
+		return getGrid().getMove(m_iValue, getMassUnit(iMassUnit), iMoveUnit);
+	}
+	
+	/** Largest speed in each of the units for the weight {NaN where the units cost more} */
+	
+	public float[] getMaxMoves(int iMassUnit)
+	{
+		return getGrid().getMaxMoves(m_iValue, getMassUnit(iMassUnit));
+	}
+	
+	/** Largest speed in the units that the weight can be moved at {NaN when it cannot be} */
+	
+	public float getMaxMove(float fMass, int iMassUnit, int iMoveUnit)
+	{
+		return getGrid().getMaxMove(fMass, getMassUnit(iMassUnit), iMoveUnit);
+	}
+	
+	/** Largest weight in the units that can be moved at the speed {NaN when none can} */
+	
+	public float getMaxMass(float fMove, int iMoveUnit, int iMassUnit)
+	{
+		return getGrid().getMaxMass(fMove, iMoveUnit, getMassUnit(iMassUnit));
+	}
+	
+	/** Speeds for the weights against the cost of the effect as at the last change wave */
+	
+	public SFXMoveGrid getGrid()
+	{
+		SFXMoveGrid grid = m_grid;
+		// Only a field read back from a serialized model has not been updated yet
+		if (null==grid) grid = createGrid(null);
+		return grid;
+	}
+	
+	// On the thread changing the model when the effect or tables change {the grid is made again only when the cost has changed}
+	private void updateGrid()
+	{
+		if (null==m_follows) return;
+		m_grid = createGrid(m_grid);
+	}
+	
+	private SFXMoveGrid createGrid(SFXMoveGrid grid)
 	{
-		int iMassCost = m_Table.closestValue(fTry);
-		iMassCost += m_Multiplier.setIndex(iOffsetMass).getOffset();
 		int iEffectCost = m_follows.getCost();
 		
-		return iEffectCost - iMassCost;
+		if (null==grid || !grid.isFor(m_Table, m_Multiplier, m_tableSpeed))
+			return new SFXMoveGrid(m_Table, m_Multiplier, m_tableSpeed, iEffectCost);
+		
+		return grid.createGrid(iEffectCost);
 	}
-
-	public float getMoveCost(int iDeltaEffectMassCost, int iOffsetMove) 
+	
+	// Units out of range are taken as the units of the field
+	private int getMassUnit(int iMassUnit)
+	{
+		if (m_Multiplier.outRange(iMassUnit)) return m_iMultiplier;
+		return iMassUnit;
+	}
+	
+	@Override
+	public SFXBase setRules(SFXRules rules)
 	{
-		int iBaseCost = m_tableSpeed.setIndex(iOffsetMove).getOffset();
-		if (iBaseCost>iDeltaEffectMassCost) return -1;
-		if (m_Table.outRange(iDeltaEffectMassCost - iBaseCost)) return -2;
-		return m_Table.getValue(iDeltaEffectMassCost - iBaseCost);
+		SFXSpeed tableSpeed = SFXTableMultiplier.getMultiplier(SFXSpeed.class, rules);
+		if (tableSpeed!=m_tableSpeed)
+		{
+			m_tableSpeed = tableSpeed;
+			propagateChange();
+		}
+		
+		// The weight and speed tables may both have changed
+		super.setRules(rules);
+		updateGrid();
+		return this;
+	}
+	
+	@Override
+	protected void copyReferences(SFXCopy copy)
+	{
+		super.copyReferences(copy);
+		m_listSource = copy.getFields(m_listSource);
 	}
 }
 
@@ -1164,10 +1704,7 @@ class SFXFieldMaintenance extends SFXCalculated
 	{
 		if (0==m_iValue) return 0;
 		
-		int iCost = 0;
-		
-		for (SFXBase field : m_listSource)
-			iCost += field.getCost();
+		int iCost = getSourceCost();
 
 		return 10 * iCost / 100;
 	}	
@@ -1182,10 +1719,7 @@ class SFXFieldFocus extends SFXCalculated
 	{
 		if (0==m_iValue) return 0;
 		
-		int iCost = 0;
-		
-		for (SFXBase fieldCost : m_listSource)
-			iCost += fieldCost.getCost();
+		int iCost = getSourceCost();
 
 		iCost = (iCost + 4)/5; // Round up
 			
@@ -1242,6 +1776,20 @@ class SFXFieldCharges extends SFXScalar
 		m_zWard = zWard;
 		return this;
 	}
+	
+	@Override
+	protected void writeField(SFXFieldOutput output) throws IOException
+	{
+		super.writeField(output);
+		output.writeFlag(m_zWard);
+	}
+	
+	@Override
+	protected void readField(SFXFieldInput input) throws IOException
+	{
+		super.readField(input);
+		m_zWard = input.readFlag();
+	}
 }
 
 class SFXFieldOptional extends SFXCalculated
@@ -1257,6 +1805,12 @@ class SFXFieldOptional extends SFXCalculated
 					
 		return setValue(iCost);
 	}
+
+	@Override
+	protected boolean isSaved()
+	{
+		return false;
+	}
 }
 
 class SFXCompositeCommunity extends SFXComposite
@@ -1269,8 +1823,7 @@ class SFXCompositeCommunity extends SFXComposite
 	@Override
 	public SFXBase createField(String scField)
 	{
-		m_tableCommunity = new SFXTableCommunity();
-		m_tableCommunity.setInitialValues(32);	
+		m_tableCommunity = SFXTable.getTable(SFXTableCommunity.class, 32);
 		return super.createField(scField);
 	}
 	
@@ -1285,9 +1838,16 @@ class SFXCompositeCommunity extends SFXComposite
 	{
 		SFXFieldCommunity valueCommunity = (SFXFieldCommunity) field;
 		valueCommunity.createField("Community").addListeners(m_listFieldListeners);
-		valueCommunity.setTable(m_tableCommunity).setMultiplierTable(new SFXCommunityModifier()).setValue(0);
+		valueCommunity.setTable(m_tableCommunity).setMultiplierTable(SFXTableMultiplier.getMultiplier(SFXCommunityModifier.class, getRules())).setValue(0);
 		return super.addField(field);
 	}	
+	
+	@Override
+	public SFXBase setRules(SFXRules rules)
+	{
+		m_tableCommunity = SFXTable.getTable(SFXTableCommunity.class, 32, rules);
+		return super.setRules(rules);
+	}
 }
 
 class SFXFieldCommunity extends SFXValueModifier
@@ -1317,7 +1877,7 @@ class SFXFieldCommunity extends SFXValueModifier
 	{
 		if (!m_zReduce) return 0;
 		int iSize = m_Table.getCost(m_iValue);
-		int iDN = m_Multiplier.getOffset();
+		int iDN = m_Multiplier.getOffset(m_iMultiplier);
 		return iSize * iDN / 2;
 	}
 	
@@ -1325,7 +1885,7 @@ class SFXFieldCommunity extends SFXValueModifier
 	public int getReduction()
 	{
 		if (m_zReduce) return 0;
-		return m_Table.getCost(m_iValue) * m_Multiplier.getOffset() / 2;
+		return m_Table.getCost(m_iValue) * m_Multiplier.getOffset(m_iMultiplier) / 2;
 	}
 	
 	public boolean isInitial()
@@ -1338,6 +1898,20 @@ class SFXFieldCommunity extends SFXValueModifier
 		m_zInitial = zInitial;
 		return this;
 	}
+	
+	@Override
+	protected void writeField(SFXFieldOutput output) throws IOException
+	{
+		super.writeField(output);
+		output.writeFlag(m_zInitial);
+	}
+	
+	@Override
+	protected void readField(SFXFieldInput input) throws IOException
+	{
+		super.readField(input);
+		m_zInitial = input.readFlag();
+	}
 }
 
 class SFXCompositeComponents extends SFXComposite
@@ -1354,8 +1928,7 @@ class SFXCompositeComponents extends SFXComposite
 	@Override
 	public SFXBase createField(String scField)
 	{
-		m_tableBonus = new SFXBonus();
-		m_tableBonus.setInitialValues(4);
+		m_tableBonus = SFXTable.getTable(SFXBonus.class, 4);
 		
 		m_listSource = new CopyOnWriteArrayList<SFXBase>();
 		m_actionReduction = new SFXCompositeActionReduction();
@@ -1374,10 +1947,17 @@ class SFXCompositeComponents extends SFXComposite
 	{
 		SFXFieldComponent valueCommunity = (SFXFieldComponent) field;
 		valueCommunity.createField("Component").addListeners(m_listFieldListeners);
-		valueCommunity.setTable(m_tableBonus).setMultiplierTable(new SFXComponent()).setValue(0);
+		valueCommunity.setTable(m_tableBonus).setMultiplierTable(SFXTableMultiplier.getMultiplier(SFXComponent.class, getRules())).setValue(0);
 		return super.addField(field);
 	}
 	
+	@Override
+	public SFXBase setRules(SFXRules rules)
+	{
+		m_tableBonus = SFXTable.getTable(SFXBonus.class, 4, rules);
+		return super.setRules(rules);
+	}
+	
 	@Override
 	public SFXBase addDepends(SFXBase field)
 	{
@@ -1388,6 +1968,8 @@ class SFXCompositeComponents extends SFXComposite
 	@Override
 	public SFXField updateValue()
 	{
+		resetCost();
+		
 		int iIndex = 0;
 		
 		// Sum of mandatory and optional elements
@@ -1421,6 +2003,15 @@ class SFXCompositeComponents extends SFXComposite
 	{
 		return m_zLimited;
 	}	
+	
+	@Override
+	protected void copyReferences(SFXCopy copy)
+	{
+		super.copyReferences(copy);
+		m_listSource = copy.getFields(m_listSource);
+		m_actionReduction = new SFXCompositeActionReduction();
+		m_actionChanged = new SFXCompositeActionChanged();
+	}
 }
 
 class SFXFieldComponent extends SFXFieldCommunity
@@ -1458,7 +2049,7 @@ class SFXFieldComponent extends SFXFieldCommunity
 	
 	private int getCombined()
 	{
-		return m_iValue + m_Multiplier.getIndex();
+		return m_iValue + m_iMultiplier;
 	}
 	
 	@Override
@@ -1473,6 +2064,20 @@ class SFXFieldComponent extends SFXFieldCommunity
 		m_zDestroyed = zDestroyed;
 		return propagateChange();
 	}	
+	
+	@Override
+	protected void writeField(SFXFieldOutput output) throws IOException
+	{
+		super.writeField(output);
+		output.writeFlag(m_zDestroyed);
+	}
+	
+	@Override
+	protected void readField(SFXFieldInput input) throws IOException
+	{
+		super.readField(input);
+		m_zDestroyed = input.readFlag();
+	}
 }
 
 class SFXCompositeActionReduction extends SFXCompositeAction
@@ -1556,8 +2161,7 @@ class SFXCompositeGestures extends SFXComposite
 	@Override
 	public SFXBase createField(String scField)
 	{
-		m_tableBonus = new SFXBonus();
-		m_tableBonus.setInitialValues(4);
+		m_tableBonus = SFXTable.getTable(SFXBonus.class, 4);
 		return super.createField(scField);
 	}
 
@@ -1572,9 +2176,16 @@ class SFXCompositeGestures extends SFXComposite
 	{
 		SFXFieldGesture valueGesture = (SFXFieldGesture) field;
 		valueGesture.createField("Gesture").addListeners(m_listFieldListeners);
-		valueGesture.setTable(m_tableBonus).setMultiplierTable(new SFXGesture()).setValue(0);
+		valueGesture.setTable(m_tableBonus).setMultiplierTable(SFXTableMultiplier.getMultiplier(SFXGesture.class, getRules())).setValue(0);
 		return super.addField(field);
 	}
+	
+	@Override
+	public SFXBase setRules(SFXRules rules)
+	{
+		m_tableBonus = SFXTable.getTable(SFXBonus.class, 4, rules);
+		return super.setRules(rules);
+	}
 }
 
 class SFXFieldGesture extends SFXFieldCommunity
@@ -1584,7 +2195,7 @@ class SFXFieldGesture extends SFXFieldCommunity
 	@Override
 	public SFXField propagateChange()
 	{
-		int iCost = m_Multiplier.getIndex();
+		int iCost = m_iMultiplier;
 		
 		if (2>iCost) 
 			m_scComment = "None";
@@ -1598,14 +2209,14 @@ class SFXFieldGesture extends SFXFieldCommunity
 	public int getCost()
 	{
 		if (!m_zReduce) return 0;
-		return m_iValue + m_Multiplier.getIndex();
+		return m_iValue + m_iMultiplier;
 	}
 	
 	@Override
 	public int getReduction()
 	{
 		if (m_zReduce) return 0;
-		return m_iValue + m_Multiplier.getIndex();
+		return m_iValue + m_iMultiplier;
 	}	
 }
 
@@ -1637,7 +2248,7 @@ class SFXFieldIncantation extends SFXValueModifier
 	@Override
 	public SFXField propagateChange()
 	{
-		int iCost = m_Multiplier.getIndex();
+		int iCost = m_iMultiplier;
 		
 		if (3>iCost) 
 			m_scComment = "None";
@@ -1698,6 +2309,22 @@ class SFXFieldIncantation extends SFXValueModifier
 		m_zProfane = zProfane;
 		return propagateChange();
 	}
+	
+	@Override
+	protected void writeField(SFXFieldOutput output) throws IOException
+	{
+		super.writeField(output);
+		output.writeFlag(m_zForeign).writeFlag(m_zLoud).writeFlag(m_zProfane);
+	}
+	
+	@Override
+	protected void readField(SFXFieldInput input) throws IOException
+	{
+		super.readField(input);
+		m_zForeign = input.readFlag();
+		m_zLoud = input.readFlag();
+		m_zProfane = input.readFlag();
+	}
 }
 
 class SFXFieldRelatedSkill extends SFXValueModifier
@@ -1707,7 +2334,7 @@ class SFXFieldRelatedSkill extends SFXValueModifier
 	@Override
 	public SFXField propagateChange()
 	{
-		int iCost = m_Multiplier.getIndex();
+		int iCost = m_iMultiplier;
 		
 		if (1>iCost) 
 			m_scComment = "None";
@@ -1763,6 +2390,27 @@ class SFXFractionUnreal extends SFXFraction
 		m_fieldEffect = fieldEffect;
 		return super.addDepends(fieldEffect);
 	}
+	
+	@Override
+	protected void copyReferences(SFXCopy copy)
+	{
+		super.copyReferences(copy);
+		m_fieldEffect = copy.getField(m_fieldEffect);
+	}
+	
+	@Override
+	protected void writeField(SFXFieldOutput output) throws IOException
+	{
+		super.writeField(output);
+		output.writeNumber(m_iDisbelief);
+	}
+	
+	@Override
+	protected void readField(SFXFieldInput input) throws IOException
+	{
+		super.readField(input);
+		m_iDisbelief = input.readNumber();
+	}
 }
 
 class SFXFieldModifiers extends SFXDouble
@@ -1845,6 +2493,19 @@ class SFXFieldModifiers extends SFXDouble
 	{
 		return m_zLimited;
 	}	
+	
+	@Override
+	protected void copyReferences(SFXCopy copy)
+	{
+		super.copyReferences(copy);
+		m_actionReduction = new SFXCompositeActionReduction();
+	}
+	
+	@Override
+	protected boolean isSaved()
+	{
+		return false;
+	}
 }			
 
 class SFXFieldTotal extends SFXDouble
@@ -1885,6 +2546,22 @@ class SFXFieldTotal extends SFXDouble
 		m_doubleModifiers = doubleModifiers;
 		return this;
 	}
+	
+	@Override
+	protected void copyReferences(SFXCopy copy)
+	{
+		super.copyReferences(copy);
+		m_calculatedMandatory = copy.getField(m_calculatedMandatory);
+		m_calculatedOptional = copy.getField(m_calculatedOptional);
+		m_fraction = copy.getField(m_fraction);
+		m_doubleModifiers = copy.getField(m_doubleModifiers);
+	}
+
+	@Override
+	protected boolean isSaved()
+	{
+		return false;
+	}
 }
 
 class SFXFieldConcentrationAdd extends SFXCalculated
@@ -1911,6 +2588,13 @@ class SFXFieldConcentrationAdd extends SFXCalculated
 		int iConcentration = m_fieldConcentration.getCost() + m_fieldConcentration.getReduction();
 		return 0<iConcentration;
 	}
+	
+	@Override
+	protected void copyReferences(SFXCopy copy)
+	{
+		super.copyReferences(copy);
+		m_fieldConcentration = copy.getField(m_fieldConcentration);
+	}
 }
 
 class SFXFieldReception extends SFXValue
@@ -1929,7 +2613,7 @@ class SFXFieldReception extends SFXValue
 	@Override
 	public int getCost()
 	{
-		int iCost = m_Multiplier.getOffset();
+		int iCost = m_Multiplier.getOffset(m_iMultiplier);
 		if (0==iCost) return 0;
 		
 		if (m_zIdentification) iCost += 1;
@@ -1946,6 +2630,27 @@ class SFXFieldReception extends SFXValue
 		if (m_zIdentification) return 1;
 		return 0;
 	}
+	
+	@Override
+	protected void copyReferences(SFXCopy copy)
+	{
+		super.copyReferences(copy);
+		m_fieldSkill = copy.getField(m_fieldSkill);
+	}
+	
+	@Override
+	protected void writeField(SFXFieldOutput output) throws IOException
+	{
+		super.writeField(output);
+		output.writeFlag(m_zIdentification);
+	}
+	
+	@Override
+	protected void readField(SFXFieldInput input) throws IOException
+	{
+		super.readField(input);
+		m_zIdentification = input.readFlag();
+	}
 }
 
 class SFXFieldTrance extends SFXValue
@@ -1968,8 +2673,8 @@ class SFXFieldTrance extends SFXValue
 		int iSkill = m_fieldSkill.getCost();
 		if (SFXSkill._NECROSCOPE!=iSkill) return changedField();
 		
-		int iCost = m_Multiplier.getOffset();
-		if (0==iCost) m_Multiplier.setIndex(_DEFINED_NECROSCOPE);
+		int iCost = m_Multiplier.getOffset(m_iMultiplier);
+		if (0==iCost) m_iMultiplier = _DEFINED_NECROSCOPE;
 
 		return propagateChange();
 	}
@@ -1977,12 +2682,19 @@ class SFXFieldTrance extends SFXValue
 	@Override
 	public int getCost()
 	{
-		int iCost = m_Multiplier.getOffset();
+		int iCost = m_Multiplier.getOffset(m_iMultiplier);
 		int iSkill = m_fieldSkill.getCost();
 		if (SFXSkill._NECROSCOPE==iSkill) iCost -= _DEFINED_NECROSCOPE;
 		
 		return iCost;
 	}	
+	
+	@Override
+	protected void copyReferences(SFXCopy copy)
+	{
+		super.copyReferences(copy);
+		m_fieldSkill = copy.getField(m_fieldSkill);
+	}
 }
 
 class SFXFieldTotalN extends SFXDouble
@@ -2047,4 +2759,17 @@ class SFXFieldTotalN extends SFXDouble
 		m_listSource.add(fieldDepends);
 		return super.addDepends(fieldDepends);
 	}
+	
+	@Override
+	protected void copyReferences(SFXCopy copy)
+	{
+		super.copyReferences(copy);
+		m_listSource = copy.getFields(m_listSource);
+	}
+
+	@Override
+	protected boolean isSaved()
+	{
+		return false;
+	}
 }
@@ -61,7 +61,7 @@ class SFXFieldFactoryRange extends SFXFieldFactory
 		SFXValue valueRange = new SFXValue();
 		valueRange.createField("Range").addListeners(m_listFieldListeners);
 		// Set the table entry {for the value 0}, the type and the value
-		valueRange.setTable(SFXTable.getDefaultValueTable()).setMultiplierTable(new SFXDistance()).setValue(0);
+		valueRange.setTable(SFXTable.getDefaultValueTable()).setMultiplierTable(SFXTableMultiplier.getMultiplier(SFXDistance.class)).setValue(0);
 		return replaceParent(valueRange);
 	}	
 }
@@ -79,7 +79,7 @@ class SFXFieldFactorySpeed extends SFXFieldFactory
 		
 		// When instance created range already been created
 		valueSpeed.createField("Speed").addListeners(m_listFieldListeners).addDepends(fieldFollows);
-		valueSpeed.setFollows(fieldFollows).setTable(SFXTable.getDefaultValueTable()).setMultiplierTable(new SFXSpeed()).setValue(0);
+		valueSpeed.setFollows(fieldFollows).setTable(SFXTable.getDefaultValueTable()).setMultiplierTable(SFXTableMultiplier.getMultiplier(SFXSpeed.class)).setValue(0);
 		return replaceParent(valueSpeed);
 	}
 }
@@ -93,7 +93,7 @@ class SFXFieldFactoryDuration extends SFXFieldFactory
 	{
 		SFXValue valueDuration = new SFXValue();
 		valueDuration.createField("Duration").addListeners(m_listFieldListeners);
-		valueDuration.setTable(SFXTable.getDefaultValueTable()).setMultiplierTable(new SFXTime()).setValue(0);
+		valueDuration.setTable(SFXTable.getDefaultValueTable()).setMultiplierTable(SFXTableMultiplier.getMultiplier(SFXTime.class)).setValue(0);
 		return replaceParent(valueDuration);
 	}
 }
@@ -146,7 +146,7 @@ class SFXFieldFactoryCasting extends SFXFieldFactory
 	{
 		SFXValue valueCasting = new SFXValue();
 		valueCasting.createField("Casting").addListeners(m_listFieldListeners);
-		valueCasting.setTable(SFXTable.getDefaultValueTable()).setMultiplierTable(new SFXTime()).setValue(0);
+		valueCasting.setTable(SFXTable.getDefaultValueTable()).setMultiplierTable(SFXTableMultiplier.getMultiplier(SFXTime.class)).setValue(0);
 		return replaceParent(valueCasting);
 	}
 }
@@ -164,9 +164,9 @@ class SFXFieldFactoryMandatory extends SFXFieldFactory
 		SFXBase fieldSubMandatory = getField("SubMandatory");
 		SFXBase fieldCasting = getField("Casting");
 		calculatedMandatory.addDepends(fieldSubMandatory).addDepends(fieldCasting);
-		// Also add source for 1/2 mandatory for calculation
+		// Also depends on 1/2 mandatory for calculation so the change wave updates it first
 		SFXBase fieldHalf = getField("HalfMandatory");
-		calculatedMandatory.m_listSource.add(fieldHalf);
+		calculatedMandatory.addDepends(fieldHalf);
 		
 		return replaceParent(calculatedMandatory);
 	}	
@@ -214,7 +214,7 @@ class SFXFieldFactoryMultiAttribute extends SFXFieldFactory
 	{
 		SFXValue valueMultiAttribute = new SFXValue();
 		valueMultiAttribute.createField("MultiAttribute").addListeners(m_listFieldListeners);
-		valueMultiAttribute.setTable(SFXTable.getDefaultValueTable()).setMultiplierTable(new SFXMultiAttribute()).setValue(0);	
+		valueMultiAttribute.setTable(SFXTable.getDefaultValueTable()).setMultiplierTable(SFXTableMultiplier.getMultiplier(SFXMultiAttribute.class)).setValue(0);	
 		return replaceParent(valueMultiAttribute);
 	}
 }
@@ -431,7 +431,7 @@ class SFXFieldFactoryConcentration extends SFXFieldFactory
 	{
 		SFXValueModifier valueConcentration = new SFXFieldConcentration();
 		valueConcentration.createField("Concentration").addListeners(m_listFieldListeners);
-		valueConcentration.setTable(SFXTable.getDefaultValueTable()).setMultiplierTable(new SFXTime()).setValue(0);
+		valueConcentration.setTable(SFXTable.getDefaultValueTable()).setMultiplierTable(SFXTableMultiplier.getMultiplier(SFXTime.class)).setValue(0);
 		return replaceParent(valueConcentration);
 	}
 }
@@ -459,7 +459,7 @@ class SFXFieldFactoryIncantation extends SFXFieldFactory
 	{
 		SFXFieldIncantation valueIncantation = new SFXFieldIncantation();
 		valueIncantation.createField("Incantation").addListeners(m_listFieldListeners);
-		valueIncantation.setTable(SFXTable.getDefaultValueTable()).setMultiplierTable(new SFXIncantation()).setValue(0);
+		valueIncantation.setTable(SFXTable.getDefaultValueTable()).setMultiplierTable(SFXTableMultiplier.getMultiplier(SFXIncantation.class)).setValue(0);
 		return replaceParent(valueIncantation);
 	}	
 }
@@ -473,7 +473,7 @@ class SFXFieldFactoryRelatedSkill extends SFXFieldFactory
 	{
 		SFXFieldRelatedSkill valueRelatedSkill = new SFXFieldRelatedSkill();
 		valueRelatedSkill.createField("RelatedSkill").addListeners(m_listFieldListeners);
-		valueRelatedSkill.setTable(SFXTable.getDefaultValueTable()).setMultiplierTable(new SFXRelatedSkill()).setValue(0);
+		valueRelatedSkill.setTable(SFXTable.getDefaultValueTable()).setMultiplierTable(SFXTableMultiplier.getMultiplier(SFXRelatedSkill.class)).setValue(0);
 		return replaceParent(valueRelatedSkill);
 	}		
 }
@@ -578,7 +578,7 @@ class SFXFieldFactorySkill extends SFXFieldFactory
 	{
 		SFXValue valueSkill = new SFXValue();
 		valueSkill.createField("Skill").addListeners(m_listFieldListeners);
-		valueSkill.setTable(SFXTable.getDefaultValueTable()).setMultiplierTable(new SFXSkill());
+		valueSkill.setTable(SFXTable.getDefaultValueTable()).setMultiplierTable(SFXTableMultiplier.getMultiplier(SFXSkill.class));
 		return replaceParent(valueSkill);
 	}
 }
@@ -610,7 +610,7 @@ class SFXFieldFactoryReception extends SFXFieldFactory
 	{
 		SFXFieldReception valueReception = new SFXFieldReception();
 		valueReception.createField("Reception").addListeners(m_listFieldListeners);
-		valueReception.setTable(SFXTable.getDefaultValueTable()).setMultiplierTable(new SFXReception());
+		valueReception.setTable(SFXTable.getDefaultValueTable()).setMultiplierTable(SFXTableMultiplier.getMultiplier(SFXReception.class));
 		
 		SFXBase field = getField("Skill");
 		valueReception.addDepends(field);
@@ -629,7 +629,7 @@ class SFXFieldFactoryTrance extends SFXFieldFactory
 	{
 		SFXFieldTrance valueTrance = new SFXFieldTrance();
 		valueTrance.createField("Trance").addListeners(m_listFieldListeners);
-		valueTrance.setTable(SFXTable.getDefaultValueTable()).setMultiplierTable(new SFXTrance());
+		valueTrance.setTable(SFXTable.getDefaultValueTable()).setMultiplierTable(SFXTableMultiplier.getMultiplier(SFXTrance.class));
 
 		SFXBase field = getField("Skill");
 		valueTrance.addDepends(field);
@@ -648,7 +648,7 @@ class SFXFieldFactoryLock extends SFXFieldFactory
 	{
 		SFXValue valueLock = new SFXValue();
 		valueLock.createField("Lock").addListeners(m_listFieldListeners);
-		valueLock.setTable(SFXTable.getDefaultValueTable()).setMultiplierTable(new SFXLock());
+		valueLock.setTable(SFXTable.getDefaultValueTable()).setMultiplierTable(SFXTableMultiplier.getMultiplier(SFXLock.class));
 		return replaceParent(valueLock);
 	}
 }
@@ -662,7 +662,7 @@ class SFXFieldFactoryCountenance extends SFXFieldFactory
 	{
 		SFXValue valueCountenance = new SFXValue();
 		valueCountenance.createField("Countenance").addListeners(m_listFieldListeners);
-		valueCountenance.setTable(SFXTable.getDefaultValueTable()).setMultiplierTable(new SFXCountenance());
+		valueCountenance.setTable(SFXTable.getDefaultValueTable()).setMultiplierTable(SFXTableMultiplier.getMultiplier(SFXCountenance.class));
 		return replaceParent(valueCountenance);
 	}
 }
@@ -1,10 +1,26 @@
 package sfx;
 
+import java.io.IOException;
 import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.regex.Pattern;
 
 /**
  * A listener to the model can respond to four model changes
@@ -29,14 +45,155 @@ public class SFXModel implements Serializable
 	
 	private transient List<SFXModelListener> m_listModelListeners = null; // Marked as transient so do not require to save listeners
 	private Map<String, SFXBase> m_mapFields = null;
+	private transient String[] m_ascOrder = null; // Shared by all models with the same fields
+	private transient SFXModelSubscription m_subscription = null;
+	private transient volatile SFXModelSnapshot m_snapshot = null; // Latest copy of the fields for readers on other threads
+	private transient volatile boolean m_zSnapshot = false; // Set once a change wave leaves the snapshot behind the fields
+	private transient SFXModelWriter m_writer = null;
+	private transient SFXRules m_rules = null; // House rules the model is priced with {null for the standard rules}
+	
+	// Order of the fields {sources before dependents} for each set of factories
+	private static final Map<Set<Class<?>>, String[]> sm_mapOrders = new ConcurrentHashMap<Set<Class<?>>, String[]>();
+	// Model built from the factories that new models are copied from
+	private static SFXModel sm_modelPrototype = null;
+	// Records of the fields of a new model {fields saved with the same record are not written}
+	private static Map<String, byte[]> sm_mapDefaults = null;
 		
 	public SFXModel createModel() 
 	{
 		m_listModelListeners = new CopyOnWriteArrayList<SFXModelListener>();
-		m_mapFields = createFields();
+		
+		SFXModel modelPrototype = getPrototype();
+		m_mapFields = modelPrototype.copyFields(new SFXCopy(m_listModelListeners));
+		m_ascOrder = modelPrototype.m_ascOrder;
 		return this;
 	}
 	
+	private static synchronized SFXModel getPrototype()
+	{
+		if (null==sm_modelPrototype)
+		{
+			SFXModel modelPrototype = new SFXModel();
+			modelPrototype.m_listModelListeners = new CopyOnWriteArrayList<SFXModelListener>();
+			modelPrototype.m_mapFields = modelPrototype.createFields();
+			modelPrototype.m_ascOrder = getOrder(modelPrototype.m_mapFields);
+			modelPrototype.createInstances();
+			sm_modelPrototype = modelPrototype;
+		}
+		return sm_modelPrototype;
+	}
+	
+	/** A new model with a copy of the fields of this one {e.g. to keep a variant of the spell} */
+	
+	public SFXModel copy()
+	{
+		SFXModel modelCopy = new SFXModel();
+		modelCopy.m_listModelListeners = new CopyOnWriteArrayList<SFXModelListener>();
+		modelCopy.m_mapFields = copyFields(new SFXCopy(modelCopy.m_listModelListeners));
+		modelCopy.m_ascOrder = m_ascOrder;
+		modelCopy.m_rules = m_rules;
+		return modelCopy;
+	}
+	
+	/** Copy the fields so the new fields are wired to each other in the same way as the fields of this model */
+	
+	private Map<String, SFXBase> copyFields(SFXCopy copy)
+	{
+		Map<String, SFXBase> mapFields = new ConcurrentHashMap<String, SFXBase>();
+		
+		for (String scField : getOrder())
+			mapFields.put(scField, copy.getField(getField(scField)));
+		
+		return mapFields;
+	}
+	
+	/* ======================================================================
+	   Saving the model {see SFXModelFile}.  Each field of the model is
+	   written with its name and read back into the field of the same name
+	   ====================================================================== */
+	
+	void writeFields(SFXFieldOutput output) throws IOException
+	{
+		// Only the fields changed from a new model are written
+		Map<String, byte[]> mapDefaults = getDefaults();
+		Map<String, byte[]> mapRecords = getRecords();
+		
+		for (Iterator<Map.Entry<String, byte[]>> iterator = mapRecords.entrySet().iterator(); iterator.hasNext();)
+		{
+			Map.Entry<String, byte[]> entry = iterator.next();
+			if (Arrays.equals(entry.getValue(), mapDefaults.get(entry.getKey()))) iterator.remove();
+		}
+		
+		output.writeNumber(mapRecords.size());
+		for (Map.Entry<String, byte[]> entry : mapRecords.entrySet()) output.writeField(entry.getKey(), entry.getValue());
+	}
+	
+	/** The name of each field of the model {a field in a composite is known by the field it is in} */
+	
+	Map<SFXBase, String> getNames()
+	{
+		Map<SFXBase, String> mapNames = new IdentityHashMap<SFXBase, String>();
+		for (String scField : getOrder()) mapNames.put(getField(scField), scField);
+		return mapNames;
+	}
+	
+	// New models are copies of the prototype so have its records
+	private static synchronized Map<String, byte[]> getDefaults() throws IOException
+	{
+		if (null==sm_mapDefaults) sm_mapDefaults = getPrototype().getRecords();
+		return sm_mapDefaults;
+	}
+	
+	/** The record of each field the user sets by name in the order of the model */
+	
+	Map<String, byte[]> getRecords() throws IOException
+	{
+		Map<String, byte[]> mapRecords = new LinkedHashMap<String, byte[]>();
+		for (String scField : getOrder())
+		{
+			SFXBase field = getField(scField);
+			if (field.isSaved()) mapRecords.put(scField, SFXFieldOutput.getRecord(field));
+		}
+		return mapRecords;
+	}
+	
+	/** Read the fields in a batch {the fields calculated from them are calculated again on commit} */
+	
+	void readFields(SFXFieldInput input) throws IOException
+	{
+		for (int iFields = input.readNumber(); 0<iFields; --iFields)
+		{
+			String scField = input.readName();
+			// Fields this model does not have are skipped
+			input.readField(m_mapFields.containsKey(scField)?getField(scField):null);
+		}
+		
+		// Fields not written are as the user left them too {e.g. a choice put back to the default}
+		for (String scField : getOrder()) readChange(getField(scField));
+	}
+	
+	/** Read the record into the field of the name {false when the model does not have the field} */
+	
+	boolean readField(String scField, byte[] abRecord, int iVersion) throws IOException
+	{
+		if (!m_mapFields.containsKey(scField)) return false;
+		
+		SFXBase field = getField(scField);
+		SFXFieldInput.readRecord(field, abRecord, iVersion);
+		readChange(field);
+		return true;
+	}
+	
+	// A field read keeps the value read and the fields calculated from it are calculated again
+	private static void readChange(SFXBase field)
+	{
+		if (!field.isSaved()) return;
+		
+		// A composite is updated rather than its fields set again {setting one resets the others of an exclusive area}
+		if (field instanceof SFXComposite) SFXChangeWave.updateField(field);
+		else SFXChangeWave.readField(field);
+	}
+	
 	/* ======================================================================
 	   Listeners for the model
 	   ====================================================================== */
@@ -49,11 +206,206 @@ public class SFXModel implements Serializable
 	public void removeListener(SFXModelListener listener)
 	{
 		if (m_listModelListeners.contains(listener)) m_listModelListeners.remove(listener);
+		if (null!=m_subscription) m_subscription.removeListener(listener);
+	}
+	
+	/** Listen to changes of only the fields given {fields added, removed or replaced are still sent} */
+	
+	public void addListener(SFXModelListener listener, Collection<? extends SFXBase> collectionFields) 
+	{
+		getSubscription().addListener(listener, collectionFields);
+	}
+	
+	/** Listen to changes of only the fields with a name matching the regular expression */
+	
+	public void addListener(SFXModelListener listener, String scPattern) 
+	{
+		getSubscription().addListener(listener, Pattern.compile(scPattern));
+	}
+	
+	private SFXModelSubscription getSubscription()
+	{
+		// Subscriptions are sent on by a single listener of the model
+		if (null==m_subscription)
+		{
+			m_subscription = new SFXModelSubscription();
+			m_listModelListeners.add(m_subscription);
+		}
+		return m_subscription;
+	}
+	
+	/** The thread that applies the changes from a view {started when first asked for} */
+	
+	public synchronized SFXModelWriter getWriter()
+	{
+		if (null==m_writer) m_writer = new SFXModelWriter().createWriter(this);
+		return m_writer;
+	}
+	
+	/* ======================================================================
+	   House rules.  The model is priced with the tables of the rules chosen
+	   by name {see SFXRules}.  Changing the rules swaps the tables of the
+	   fields that read them and only those fields and their dependents are
+	   recalculated, all in the one change wave.  The rules are not saved
+	   with the model but kept when other content is loaded into it
+	   ====================================================================== */
+	
+	public SFXModel setProfile(String scProfile)
+	{
+		return setRules(SFXRules.getRules(scProfile));
+	}
+	
+	public String getProfile()
+	{
+		return null==m_rules?null:m_rules.getProfile();
+	}
+	
+	public SFXModel setRules(SFXRules rules)
+	{
+		m_rules = rules;
+		
+		beginBatch();
+		try
+		{
+			for (String scField : getOrder()) getField(scField).setRules(rules);
+		}
+		finally
+		{
+			commit();
+		}
+		
+		return this;
+	}
+	
+	/* ======================================================================
+	   Snapshots of the model for reading on other threads.  Once published
+	   the end of each change wave only marks the snapshot as behind and the
+	   fields are copied when a reader next asks {on the thread making the
+	   changes, between waves} so a reader only ever sees the values after
+	   all the dependents are recalculated and waves nobody reads cost
+	   nothing.  A snapshot is never changed after it is made so it can be
+	   read without locking
+	   ====================================================================== */
+	
+	public SFXModel publishSnapshots()
+	{
+		if (null!=m_snapshot) return this;
+		
+		m_snapshot = createSnapshot();
+		m_listModelListeners.add(new SFXModelPublisher(this));
+		return this;
+	}
+	
+	/** The snapshot after the last change wave {null until publishSnapshots is called}
+	 * A reader on another thread waits for the writer to copy the fields so must not be a thread the writer waits for {e.g. Swing} */
+	
+	public SFXModelSnapshot getSnapshot()
+	{
+		if (!m_zSnapshot) return m_snapshot;
+		
+		SFXModelWriter writer;
+		synchronized (this)
+		{
+			writer = m_writer;
+		}
+		
+		// Without a writer the model is changed on the thread reading {a wave still open keeps the last snapshot}
+		if (null==writer || writer.isWriter())
+		{
+			if (!SFXChangeWave.isOpen()) updateSnapshot();
+			return m_snapshot;
+		}
+		
+		FutureTask<SFXModelSnapshot> taskSnapshot = new FutureTask<SFXModelSnapshot>(new Callable<SFXModelSnapshot>()
+		{
+			@Override
+			public SFXModelSnapshot call()
+			{
+				return updateSnapshot();
+			}
+		});
+		writer.submit(taskSnapshot);
+		
+		try
+		{
+			return taskSnapshot.get();
+		}
+		catch (InterruptedException x)
+		{
+			Thread.currentThread().interrupt();
+			return m_snapshot;
+		}
+		catch (ExecutionException x)
+		{
+			throw new RuntimeException(x.getCause());
+		}
+	}
+	
+	/** A change wave has finished so the snapshot is copied again when next asked for */
+	
+	SFXModel staleSnapshot()
+	{
+		m_zSnapshot = true;
+		return this;
+	}
+	
+	private SFXModelSnapshot updateSnapshot()
+	{
+		// Only the thread making the changes copies the fields
+		if (m_zSnapshot)
+		{
+			m_zSnapshot = false;
+			m_snapshot = createSnapshot();
+		}
+		return m_snapshot;
+	}
+	
+	private SFXModelSnapshot createSnapshot()
+	{
+		// The copies have no listeners so nothing hears of them
+		SFXCopy copy = new SFXCopy(Collections.<SFXModelListener>emptyList());
+		return new SFXModelSnapshot(copyFields(copy), copy);
+	}
+	
+	/* ======================================================================
+	   Batch changes to the model.  Between beginBatch and commit the fields
+	   keep the values set but the dependents are not recalculated and the
+	   listeners are not told.  On commit the dependents are recalculated
+	   once and each changed field is sent to the listeners once.
+	   Batches are held for the thread so nest and include any model changed
+	   on the same thread
+	   ====================================================================== */
+
+	public SFXModel beginBatch()
+	{
+		SFXChangeWave.beginWave();
+		return this;
+	}
+	
+	public SFXModel commit()
+	{
+		SFXChangeWave.endWave();
+		return this;
+	}
+	
+	public SFXModel runInBatch(Runnable runChanges)
+	{
+		beginBatch();
+		try
+		{
+			runChanges.run();
+		}
+		finally
+		{
+			commit();
+		}
+		return this;
 	}
 	
 	/* ======================================================================
 	   Create the model fields.  Structure of model data is an array of 
 	   SFXFields which could also include an SFXComposite field of fields
+	   This is only done once for the prototype which new models copy
 	   
 	   Field dependency is handled using a factory holder for the field that
 	   then creates the specific field when there is an access to the model
@@ -146,6 +498,84 @@ public class SFXModel implements Serializable
 		return m_mapFields.get(scField).getInstance();
 	}
 	
+	/** Create all the fields now rather than when first used {a view does this as it builds the panels} */
+	
+	public SFXModel createInstances()
+	{
+		// In order each field finds the fields it depends on already created
+		for (String scField : getOrder()) getField(scField);
+		return this;
+	}
+	
+	/* ======================================================================
+	   Every model has the same fields with the same dependencies so the order
+	   is found once {from a model created just for this} and shared by all
+	   the models with the same set of factories
+	   ====================================================================== */
+	
+	private Iterable<String> getOrder()
+	{
+		if (null==m_ascOrder) return m_mapFields.keySet(); // Model was loaded
+		return Arrays.asList(m_ascOrder);
+	}
+	
+	private static String[] getOrder(Map<String, SFXBase> mapFactories)
+	{
+		Set<Class<?>> setFactories = new HashSet<Class<?>>();
+		for (SFXBase factory : mapFactories.values()) setFactories.add(factory.getClass());
+		
+		String[] ascOrder = sm_mapOrders.get(setFactories);
+		if (null!=ascOrder) return ascOrder;
+		
+		SFXModel modelOrder = new SFXModel();
+		modelOrder.m_listModelListeners = new CopyOnWriteArrayList<SFXModelListener>();
+		modelOrder.m_mapFields = modelOrder.createFields();
+		ascOrder = modelOrder.createOrder();
+		
+		sm_mapOrders.putIfAbsent(setFactories, ascOrder);
+		return ascOrder;
+	}
+	
+	private String[] createOrder()
+	{
+		// Find which model field holds each field {contained fields belong to their composite}
+		Map<SFXBase, String> mapOwner = new HashMap<SFXBase, String>();
+		for (String scField : m_mapFields.keySet())
+		{
+			SFXBase field = getField(scField);
+			mapOwner.put(field, scField);
+			if (field instanceof SFXComposite)
+				for (SFXBase fieldContained : ((SFXComposite)field).getComposition()) mapOwner.put(fieldContained, scField);
+		}
+		
+		LinkedList<String> listOrder = new LinkedList<String>();
+		Set<String> setVisited = new HashSet<String>();
+		for (String scField : m_mapFields.keySet())
+			orderField(scField, mapOwner, setVisited, listOrder);
+		
+		return listOrder.toArray(new String[listOrder.size()]);
+	}
+	
+	private void orderField(String scField, Map<SFXBase, String> mapOwner, Set<String> setVisited, LinkedList<String> listOrder)
+	{
+		if (!setVisited.add(scField)) return;
+		
+		List<SFXBase> listFields = new LinkedList<SFXBase>();
+		SFXBase field = getField(scField);
+		listFields.add(field);
+		if (field instanceof SFXComposite) listFields.addAll(((SFXComposite)field).getComposition());
+		
+		for (SFXBase fieldSource : listFields)
+			for (SFXBase fieldDependent : fieldSource.m_listDependents)
+			{
+				String scDependent = mapOwner.get(fieldDependent);
+				if (null!=scDependent) orderField(scDependent, mapOwner, setVisited, listOrder);
+			}
+		
+		// Added after everything depending on it so comes before them in the order
+		listOrder.addFirst(scField);
+	}
+	
 	/**
 	 * Replacing the content is a very loopy kind of thing
 	 * First all the fields that are going to be replaced are given the 
@@ -161,19 +591,33 @@ public class SFXModel implements Serializable
 		// The model internal references {dependencies follows etc.,.} should already be set up correctly
 		Map<String, SFXBase> mapField = loadModel.m_mapFields;
 		
-		for (Map.Entry<String, SFXBase> entry : mapField.entrySet())
+		// Any field changes made by the listeners while replacing are sent once at the end
+		beginBatch();
+		try
 		{
-			// Make sure field is created {for new these will still be the factory}
-			SFXBase field = entry.getValue().getInstance();
-			
-			// Set the field listeners same as for all the fields
-			field.addListeners(m_listModelListeners);
+			for (String scField : getOrder())
+			{
+				if (!mapField.containsKey(scField)) continue;
+				
+				// Make sure field is created {for new these will still be the factory}
+				SFXBase field = loadModel.getField(scField);
+				
+				// Set the field listeners same as for all the fields
+				field.addListeners(m_listModelListeners);
 
-			// Tell the listeners that the field has changed
-			replaceContentListeners(getField(entry.getKey()), field);
+				// Tell the listeners that the field has changed
+				replaceContentListeners(getField(scField), field);
+			}
+			
+			m_mapFields = mapField;
+			
+			// Loaded fields have the standard tables
+			if (null!=m_rules) setRules(m_rules);
+		}
+		finally
+		{
+			commit();
 		}
-		
-		m_mapFields = mapField;
 		
 		return true;
 	}
@@ -249,6 +693,200 @@ public class SFXModel implements Serializable
 	}
 }
 
+/* ==========================================================================
+   Listeners subscribed to some of the fields.  An index from each field to
+   the listeners interested in it means a change is only sent to them.
+   Name patterns are matched the first time a field changes and then kept
+   in the index with the listeners of that field
+   ========================================================================== */
+
+class SFXModelSubscription implements SFXModelListener
+{
+	private CopyOnWriteArrayList<SFXModelListener> m_listSubscribers = new CopyOnWriteArrayList<SFXModelListener>();
+	private Map<SFXBase, CopyOnWriteArrayList<SFXModelListener>> m_mapFields = new ConcurrentHashMap<SFXBase, CopyOnWriteArrayList<SFXModelListener>>();
+	private Map<SFXModelListener, Pattern> m_mapPatterns = new ConcurrentHashMap<SFXModelListener, Pattern>();
+	// Listeners for each field changed including those from patterns
+	private Map<SFXBase, List<SFXModelListener>> m_mapIndex = new ConcurrentHashMap<SFXBase, List<SFXModelListener>>();
+	
+	public void addListener(SFXModelListener listener, Collection<? extends SFXBase> collectionFields)
+	{
+		for (SFXBase field : collectionFields) getListeners(field).addIfAbsent(listener);
+		m_listSubscribers.addIfAbsent(listener);
+		m_mapIndex.clear();
+	}
+	
+	public void addListener(SFXModelListener listener, Pattern pattern)
+	{
+		m_mapPatterns.put(listener, pattern);
+		m_listSubscribers.addIfAbsent(listener);
+		m_mapIndex.clear();
+	}
+	
+	public void removeListener(SFXModelListener listener)
+	{
+		if (!m_listSubscribers.remove(listener)) return;
+		
+		for (List<SFXModelListener> listListeners : m_mapFields.values()) listListeners.remove(listener);
+		m_mapPatterns.remove(listener);
+		m_mapIndex.clear();
+	}
+	
+	/* ======================================================================
+	   Model listener
+	   ====================================================================== */
+	
+	@Override
+	public boolean changedField(SFXBase field)
+	{
+		List<SFXModelListener> listListeners = m_mapIndex.get(field);
+		if (null==listListeners) listListeners = createIndex(field);
+		
+		for (SFXModelListener listener : listListeners) listener.changedField(field);
+		return !listListeners.isEmpty();
+	}
+	
+	@Override
+	public boolean addField(SFXBase fieldAdded)
+	{
+		for (SFXModelListener listener : m_listSubscribers) listener.addField(fieldAdded);
+		return true;
+	}
+	
+	@Override
+	public boolean replaceField(SFXBase fieldReplace, SFXBase fieldWith)
+	{
+		// Subscriptions follow the field to its replacement
+		CopyOnWriteArrayList<SFXModelListener> listListeners = m_mapFields.remove(fieldReplace);
+		if (null!=listListeners) m_mapFields.put(fieldWith, listListeners);
+		m_mapIndex.remove(fieldReplace);
+		
+		for (SFXModelListener listener : m_listSubscribers) listener.replaceField(fieldReplace, fieldWith);
+		return true;
+	}
+	
+	@Override
+	public boolean removeField(SFXBase fieldRemoved)
+	{
+		m_mapFields.remove(fieldRemoved);
+		m_mapIndex.remove(fieldRemoved);
+		
+		for (SFXModelListener listener : m_listSubscribers) listener.removeField(fieldRemoved);
+		return true;
+	}
+	
+	private List<SFXModelListener> createIndex(SFXBase field)
+	{
+		CopyOnWriteArrayList<SFXModelListener> listListeners = new CopyOnWriteArrayList<SFXModelListener>();
+		
+		List<SFXModelListener> listFieldListeners = m_mapFields.get(field);
+		if (null!=listFieldListeners) listListeners.addAll(listFieldListeners);
+		
+		for (Map.Entry<SFXModelListener, Pattern> entry : m_mapPatterns.entrySet())
+			if (entry.getValue().matcher(field.m_scField).matches()) listListeners.addIfAbsent(entry.getKey());
+		
+		m_mapIndex.put(field, listListeners);
+		return listListeners;
+	}
+	
+	private CopyOnWriteArrayList<SFXModelListener> getListeners(SFXBase field)
+	{
+		CopyOnWriteArrayList<SFXModelListener> listListeners = m_mapFields.get(field);
+		if (null==listListeners)
+		{
+			listListeners = new CopyOnWriteArrayList<SFXModelListener>();
+			m_mapFields.put(field, listListeners);
+		}
+		return listListeners;
+	}
+}
+
+/* ==========================================================================
+   The copy of the model fields published after a change wave.  The costs
+   are worked out before publishing since fields remember their cost when
+   first asked; after that nothing in the snapshot is written
+   ========================================================================== */
+
+class SFXModelSnapshot
+{
+	private Map<String, SFXBase> m_mapFields = null;
+	private SFXCopy m_copy = null;
+	
+	public SFXModelSnapshot(Map<String, SFXBase> mapFields, SFXCopy copy)
+	{
+		m_mapFields = mapFields;
+		m_copy = copy;
+		
+		for (SFXBase field : mapFields.values()) fixCost(field);
+	}
+	
+	public SFXBase getField(String scField)
+	{
+		return m_mapFields.get(scField);
+	}
+	
+	/** The copy of a field of the model {null if the field was not in the model when the snapshot was made} */
+	
+	public <T extends SFXBase> T getField(T field)
+	{
+		return m_copy.findField(field);
+	}
+	
+	private void fixCost(SFXBase field)
+	{
+		field.getCost();
+		if (!(field instanceof SFXComposite)) return;
+		for (SFXBase fieldContained : ((SFXComposite)field).getComposition()) fixCost(fieldContained);
+	}
+}
+
+/** Listens to the model to mark the snapshot as behind once the change wave is over */
+
+class SFXModelPublisher implements SFXModelListener, Runnable
+{
+	private SFXModel m_dataModel = null;
+	
+	public SFXModelPublisher(SFXModel dataModel)
+	{
+		m_dataModel = dataModel;
+	}
+	
+	@Override
+	public void run()
+	{
+		m_dataModel.staleSnapshot();
+	}
+	
+	private boolean publishAfterWave()
+	{
+		// Any number of changes in the wave are marked the once {the wave holds each once}
+		return SFXChangeWave.afterWave(this);
+	}
+	
+	@Override
+	public boolean addField(SFXBase fieldAdded)
+	{
+		return publishAfterWave();
+	}
+	
+	@Override
+	public boolean changedField(SFXBase field)
+	{
+		return publishAfterWave();
+	}
+	
+	@Override
+	public boolean replaceField(SFXBase fieldReplace, SFXBase fieldWith)
+	{
+		return publishAfterWave();
+	}
+	
+	@Override
+	public boolean removeField(SFXBase fieldRemoved)
+	{
+		return publishAfterWave();
+	}
+}
+
 /* ==========================================================================
    Construct model from factory types to avoid reference to undefined fields
    ========================================================================== */
@@ -265,3 +903,232 @@ class SFXMapContent
 	}
 }
 
+
+/* ==========================================================================
+   A change wave collects the fields changed by a setValue and then updates
+   the dependent fields in dependency order so each is recalculated once and 
+   the listeners only ever hear of fields once their sources are up to date
+   
+   The cascade from a setValue is always on the thread making the change so 
+   the wave in progress is held for the thread
+   ========================================================================== */
+
+class SFXChangeWave
+{
+	private static final ThreadLocal<SFXChangeWave> sm_waveCurrent = new ThreadLocal<SFXChangeWave>();
+	// Wave telling its listeners {no longer open for changes but not yet finished}
+	private static final ThreadLocal<SFXChangeWave> sm_waveInforming = new ThreadLocal<SFXChangeWave>();
+	
+	private int m_iDepth = 0;
+	private boolean m_zUpdating = false;
+	
+	// Fields already given their value in this wave {either set or updated}
+	private Set<SFXBase> m_setEvaluated = new HashSet<SFXBase>();
+	// Dependent fields waiting for an update
+	private Set<SFXBase> m_setPending = new LinkedHashSet<SFXBase>();
+	// Fields to tell listeners about when the wave is finished
+	private Set<SFXBase> m_setChanged = new LinkedHashSet<SFXBase>();
+	// Run once all the listeners have been told
+	private Set<Runnable> m_setFinished = new LinkedHashSet<Runnable>();
+	
+	/** Open a wave for the thread {or join the wave already open} */
+	
+	public static SFXChangeWave beginWave()
+	{
+		SFXChangeWave wave = sm_waveCurrent.get();
+		
+		if (null==wave)
+		{
+			wave = new SFXChangeWave();
+			sm_waveCurrent.set(wave);
+		}
+		
+		++wave.m_iDepth;
+		return wave;
+	}
+	
+	/** Close the wave and when the outermost wave closes update dependents and tell the listeners */
+	
+	public static boolean endWave()
+	{
+		SFXChangeWave wave = sm_waveCurrent.get();
+		if (null==wave) return false;
+		
+		if (1<wave.m_iDepth)
+		{
+			--wave.m_iDepth;
+			return false;
+		}
+		
+		try
+		{
+			// Still open while updating so changes made by the updates join this wave
+			wave.updatePending();
+		}
+		finally
+		{
+			// Listeners that change fields in response start a new wave
+			sm_waveCurrent.remove();
+		}
+		
+		return wave.informListeners();
+	}
+	
+	/** Record the field change, the dependents that need updating and the listeners to tell */
+	
+	public static boolean propagateChange(SFXBase field)
+	{
+		beginWave().addChange(field).m_setChanged.add(field);
+		return endWave();
+	}
+	
+	/** Hold the change for the listeners when there is a wave in progress */
+	
+	public static boolean changedField(SFXBase field)
+	{
+		SFXChangeWave wave = sm_waveCurrent.get();
+		if (null==wave) return false;
+		wave.m_setChanged.add(field);
+		return true;
+	}
+	
+	/** The field read keeps its value even when fields it depends on are read later {its dependents are updated} */
+	
+	public static boolean readField(SFXBase field)
+	{
+		SFXChangeWave wave = beginWave();
+		wave.m_setEvaluated.add(field);
+		wave.m_setPending.remove(field);
+		
+		for (SFXBase fieldDependent : field.m_listDependents)
+			if (!wave.m_setEvaluated.contains(fieldDependent)) wave.m_setPending.add(fieldDependent);
+		
+		wave.m_setChanged.add(field);
+		return endWave();
+	}
+	
+	/** Update the field with the dependents of the wave {e.g. a composite read with the fields it contains} */
+	
+	public static boolean updateField(SFXBase field)
+	{
+		SFXChangeWave wave = beginWave();
+		wave.m_setEvaluated.remove(field);
+		wave.m_setPending.add(field);
+		return endWave();
+	}
+	
+	/** True while the thread has a wave open {the fields may not have their final values yet} */
+	
+	public static boolean isOpen()
+	{
+		return null!=sm_waveCurrent.get() || null!=sm_waveInforming.get();
+	}
+	
+	/** Run when the wave for the thread is finished {or now if there is no wave} */
+	
+	public static boolean afterWave(Runnable runFinished)
+	{
+		SFXChangeWave wave = sm_waveCurrent.get();
+		if (null==wave) wave = sm_waveInforming.get();
+		
+		if (null==wave)
+		{
+			runFinished.run();
+			return false;
+		}
+		
+		wave.m_setFinished.add(runFinished);
+		return true;
+	}
+	
+	private SFXChangeWave addChange(SFXBase field)
+	{
+		// In a batch a field set earlier is updated again when one it depends on is set later
+		if (!m_zUpdating) clearEvaluated(field, new HashSet<SFXBase>());
+		
+		// A field set directly keeps the value set and is not updated again by the wave
+		m_setEvaluated.add(field);
+		m_setPending.remove(field);
+		
+		for (SFXBase fieldDependent : field.m_listDependents)
+			if (!m_setEvaluated.contains(fieldDependent)) m_setPending.add(fieldDependent);
+		
+		return this;
+	}
+	
+	private void clearEvaluated(SFXBase field, Set<SFXBase> setVisited)
+	{
+		for (SFXBase fieldDependent : field.m_listDependents)
+		{
+			if (!setVisited.add(fieldDependent)) continue;
+			m_setEvaluated.remove(fieldDependent);
+			clearEvaluated(fieldDependent, setVisited);
+		}
+	}
+	
+	private boolean updatePending()
+	{
+		m_zUpdating = true;
+		
+		// Updating a field can add more dependents {or re-arrange composites} so order again until none left
+		while (!m_setPending.isEmpty())
+		{
+			List<SFXBase> listOrder = orderPending();
+			
+			for (SFXBase field : listOrder)
+			{
+				if (!m_setPending.remove(field)) continue;
+				m_setEvaluated.add(field);
+				field.updateValue();
+			}
+		}
+		
+		return true;
+	}
+	
+	/** Topological order of the fields reachable from those pending {sources before dependents} */
+	
+	private List<SFXBase> orderPending()
+	{
+		LinkedList<SFXBase> listOrder = new LinkedList<SFXBase>();
+		Set<SFXBase> setVisited = new HashSet<SFXBase>();
+		
+		for (SFXBase field : m_setPending)
+			orderField(field, setVisited, listOrder);
+		
+		return listOrder;
+	}
+	
+	private void orderField(SFXBase field, Set<SFXBase> setVisited, LinkedList<SFXBase> listOrder)
+	{
+		// Already evaluated fields are not updated again and the exclusive area fields loop back on themselves
+		if (m_setEvaluated.contains(field)) return;
+		if (!setVisited.add(field)) return;
+		
+		for (SFXBase fieldDependent : field.m_listDependents)
+			orderField(fieldDependent, setVisited, listOrder);
+		
+		// All the dependents are already in the list so this field goes in front of them
+		listOrder.addFirst(field);
+	}
+	
+	private boolean informListeners()
+	{
+		SFXChangeWave waveOuter = sm_waveInforming.get();
+		sm_waveInforming.set(this);
+		try
+		{
+			for (SFXBase field : m_setChanged)
+				field.informListeners();
+		}
+		finally
+		{
+			if (null==waveOuter) sm_waveInforming.remove();
+			else sm_waveInforming.set(waveOuter);
+		}
+		
+		for (Runnable runFinished : m_setFinished)
+			runFinished.run();
+		return true;
+	}
+}
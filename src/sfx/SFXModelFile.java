@@ -0,0 +1,548 @@
+package sfx;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * The form a model is saved in.
+ * Only what the user has set is written {the value, units and flags of each
+ * field and the fields added to the composites} and the model is rebuilt
+ * from the factories with these read back into its fields, so a file is a
+ * few hundred bytes and does not depend on the classes of the tables,
+ * multipliers or lists the fields are made of.
+ *
+ *   header    magic SFXM, version
+ *   fields    count then for each its name, the length of its record and
+ *             the record {fields this version does not have are skipped}
+ *   record    written by the field itself {see SFXBase.writeField}; the
+ *             record of a composite has the class and record of each of
+ *             the fields it contains
+ *
+ * Fields with the same record as in a new model are not written since the
+ * model read starts as a new model.  Fields the factories calculate {the
+ * totals and the limits} are not written and are calculated again from the
+ * fields read.
+ *
+ * Numbers are written in as few bytes as they need so most take one.
+ * Files saved before this form are serialized models which SFXControls
+ * still reads.
+ *
+ * Files are written beside the file first and then moved over it so a file
+ * is never left half written {see writeFile}.  On a file system that cannot
+ * move a file over another in one step the old file is replaced in two and
+ * a crash between them can leave neither.
+ */
+
+public class SFXModelFile
+{
+	private static final int _MAGIC = 0x5346584D; // SFXM
+	static final int _VERSION = 1;
+	private static final String _WRITING = ".writing";
+
+	/** True when the stream holds a model in this form {the start of the stream is read again after} */
+
+	public static boolean isModelFile(InputStream stream) throws IOException
+	{
+		stream.mark(4);
+		try
+		{
+			DataInputStream streamData = new DataInputStream(stream);
+			return _MAGIC==streamData.readInt();
+		}
+		catch (IOException x)
+		{
+			// Shorter than the magic
+			return false;
+		}
+		finally
+		{
+			stream.reset();
+		}
+	}
+
+	public static void writeModel(SFXModel dataModel, OutputStream stream) throws IOException
+	{
+		SFXFieldOutput output = new SFXFieldOutput(stream);
+		output.writeHeader(_MAGIC, _VERSION);
+		dataModel.writeFields(output);
+		output.flush();
+	}
+
+	public static byte[] getBytes(SFXModel dataModel) throws IOException
+	{
+		ByteArrayOutputStream streamModel = new ByteArrayOutputStream(1024);
+		writeModel(dataModel, streamModel);
+		return streamModel.toByteArray();
+	}
+
+	/** A new model made from the factories with the fields read from the stream */
+
+	public static SFXModel readModel(InputStream stream) throws IOException
+	{
+		SFXFieldInput input = new SFXFieldInput(stream);
+		if (_MAGIC!=input.readHeader()) throw new IOException("Not an SFX model");
+
+		int iVersion = input.getVersion();
+		if (_VERSION<iVersion) throw new IOException("Model version " + iVersion);
+
+		SFXModel dataModel = new SFXModel();
+		dataModel.createModel();
+
+		// The dependents of the fields read are recalculated once at the end
+		dataModel.beginBatch();
+		try
+		{
+			dataModel.readFields(input);
+		}
+		finally
+		{
+			dataModel.commit();
+		}
+
+		return dataModel;
+	}
+
+	/* ======================================================================
+	   Replacing files.  Even if the editor stops while a file is written the
+	   file is either as it was or has all of what was written {unless the
+	   file system cannot replace it in one step, see replaceFile}
+	   ====================================================================== */
+
+	public static void writeFile(byte[] abBytes, File file) throws IOException
+	{
+		File fileWriting = getWritingFile(file);
+		try
+		{
+			FileOutputStream stream = new FileOutputStream(fileWriting);
+			try
+			{
+				stream.write(abBytes);
+				// On the disk before it replaces the file
+				stream.getFD().sync();
+			}
+			finally
+			{
+				stream.close();
+			}
+
+			replaceFile(fileWriting, file);
+		}
+		catch (IOException x)
+		{
+			// Nothing half written is left beside the file
+			fileWriting.delete();
+			throw x;
+		}
+	}
+
+	/** Where a file is written before it is moved over the file */
+
+	static File getWritingFile(File file)
+	{
+		return new File(file.getPath() + _WRITING);
+	}
+
+	/** Move the file written over the file {in one step where the file system can, otherwise a crash can lose both} */
+
+	static void replaceFile(File fileWriting, File file) throws IOException
+	{
+		try
+		{
+			Files.move(fileWriting.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		}
+		catch (AtomicMoveNotSupportedException x)
+		{
+			// The file system can only replace the file in two steps so there is a moment with neither
+			Files.move(fileWriting.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+
+		syncDirectory(file);
+	}
+
+	// The move is only kept after a crash once the directory is on the disk too
+	private static void syncDirectory(File file)
+	{
+		File fileDirectory = file.getAbsoluteFile().getParentFile();
+		if (null==fileDirectory) return;
+
+		try
+		{
+			FileChannel channel = FileChannel.open(fileDirectory.toPath(), StandardOpenOption.READ);
+			try
+			{
+				channel.force(true);
+			}
+			finally
+			{
+				channel.close();
+			}
+		}
+		catch (IOException x)
+		{
+			// Some platforms {e.g. Windows} cannot open a directory and keep the move themselves
+		}
+	}
+}
+
+/* ==========================================================================
+   Saving off the model writer
+   The model is written to bytes on the writer, which is quick and keeps the
+   fields from changing while written, and the bytes are then written to the
+   file on a thread of its own so a slow disk holds up neither the editor nor
+   the changes to the model.  The listener is told on the saver thread once
+   the file is written or has failed
+   ========================================================================== */
+
+interface SFXSaveListener
+{
+	public boolean savedModel(File file);
+	public boolean failedSave(File file, IOException x);
+}
+
+class SFXModelSaver
+{
+	// Seconds to wait for the saves made before the editor is closed
+	private static final int _CLOSE = 30;
+
+	private ExecutorService m_executor = null;
+
+	public SFXModelSaver createSaver()
+	{
+		// The one thread so saves of a file are written in the order made
+		m_executor = Executors.newSingleThreadExecutor(new ThreadFactory()
+		{
+			@Override
+			public Thread newThread(Runnable runSave)
+			{
+				// Does not keep the application running once the view is closed
+				Thread threadSaver = new Thread(runSave, "SFX model saver");
+				threadSaver.setDaemon(true);
+				return threadSaver;
+			}
+		});
+		return this;
+	}
+
+	/** Save the model as it is now to the file {called on the model writer} */
+
+	public SFXModelSaver saveModel(SFXModel dataModel, final File file, final SFXSaveListener listener) throws IOException
+	{
+		final byte[] abModel = SFXModelFile.getBytes(dataModel);
+
+		m_executor.execute(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				try
+				{
+					SFXModelFile.writeFile(abModel, file);
+				}
+				catch (IOException x)
+				{
+					listener.failedSave(file, x);
+					return;
+				}
+
+				listener.savedModel(file);
+			}
+		});
+		return this;
+	}
+
+	/** Save the model as it is now into the library in the file {called on the model writer} */
+
+	public SFXModelSaver saveLibrary(SFXModel dataModel, final File file, final SFXSaveListener listener) throws IOException
+	{
+		final String scName = dataModel.getField("Name").getValue();
+		final byte[] abModel = SFXModelFile.getBytes(dataModel);
+
+		m_executor.execute(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				try
+				{
+					new SFXModelLibrary().openLibrary(file).writeModel(scName, abModel);
+				}
+				catch (IOException x)
+				{
+					listener.failedSave(file, x);
+					return;
+				}
+
+				listener.savedModel(file);
+			}
+		});
+		return this;
+	}
+
+	/** Wait for the saves already made to be written {false if they are not written in time} */
+
+	public boolean waitSaves()
+	{
+		// Run once the saves before it are written {the saver keeps running for saves made after}
+		Future<?> futureSaves = m_executor.submit(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+			}
+		});
+
+		try
+		{
+			futureSaves.get(_CLOSE, TimeUnit.SECONDS);
+			return true;
+		}
+		catch (InterruptedException x)
+		{
+			return false;
+		}
+		catch (ExecutionException x)
+		{
+			return false;
+		}
+		catch (TimeoutException x)
+		{
+			return false;
+		}
+	}
+}
+
+/* ==========================================================================
+   Writing and reading the fields
+   ========================================================================== */
+
+class SFXFieldOutput
+{
+	private DataOutputStream m_stream = null;
+
+	public SFXFieldOutput(OutputStream stream)
+	{
+		m_stream = new DataOutputStream(stream);
+	}
+
+	public SFXFieldOutput writeHeader(int iMagic, int iVersion) throws IOException
+	{
+		m_stream.writeInt(iMagic);
+		writeNumber(iVersion);
+		return this;
+	}
+
+	/** Zig-zag so small numbers below zero are short too then seven bits a byte with the top bit set when more follow */
+
+	public SFXFieldOutput writeNumber(int iNumber) throws IOException
+	{
+		int iBits = (iNumber << 1) ^ (iNumber >> 31);
+
+		while (0!=(iBits & ~0x7F))
+		{
+			m_stream.writeByte((iBits & 0x7F) | 0x80);
+			iBits >>>= 7;
+		}
+
+		m_stream.writeByte(iBits);
+		return this;
+	}
+
+	public SFXFieldOutput writeFlag(boolean zFlag) throws IOException
+	{
+		m_stream.writeBoolean(zFlag);
+		return this;
+	}
+
+	public SFXFieldOutput writeText(String scText) throws IOException
+	{
+		writeFlag(null!=scText);
+		if (null!=scText) m_stream.writeUTF(scText);
+		return this;
+	}
+
+	/** The record the field writes */
+
+	public static byte[] getRecord(SFXBase field) throws IOException
+	{
+		ByteArrayOutputStream streamRecord = new ByteArrayOutputStream(64);
+		SFXFieldOutput outputRecord = new SFXFieldOutput(streamRecord);
+		field.writeField(outputRecord);
+		outputRecord.flush();
+		return streamRecord.toByteArray();
+	}
+
+	/** A field of the model with the length of its record so a reader without the field can skip it */
+
+	public SFXFieldOutput writeField(String scField, byte[] abRecord) throws IOException
+	{
+		return writeName(scField).writeRecord(abRecord);
+	}
+
+	public SFXFieldOutput writeName(String scField) throws IOException
+	{
+		m_stream.writeUTF(scField);
+		return this;
+	}
+
+	public SFXFieldOutput writeRecord(byte[] abRecord) throws IOException
+	{
+		writeNumber(abRecord.length);
+		m_stream.write(abRecord);
+		return this;
+	}
+
+	/** A field contained in a composite with its class {unless the same as the field before} so it can be made again */
+
+	public SFXFieldOutput writeContent(SFXBase field, SFXBase fieldBefore) throws IOException
+	{
+		writeText(null!=fieldBefore && fieldBefore.getClass()==field.getClass()?null:field.getClass().getSimpleName());
+		field.writeField(this);
+		return this;
+	}
+
+	public SFXFieldOutput flush() throws IOException
+	{
+		m_stream.flush();
+		return this;
+	}
+}
+
+class SFXFieldInput
+{
+	// Bytes of a record read before any more are held
+	private static final int _BLOCK = 4096;
+
+	private DataInputStream m_stream = null;
+	private int m_iVersion = 0;
+
+	public SFXFieldInput(InputStream stream)
+	{
+		m_stream = new DataInputStream(stream);
+	}
+
+	private SFXFieldInput(byte[] abRecord, int iVersion)
+	{
+		m_stream = new DataInputStream(new ByteArrayInputStream(abRecord));
+		m_iVersion = iVersion;
+	}
+
+	/** The magic {the version is kept for the fields} */
+
+	public int readHeader() throws IOException
+	{
+		int iMagic = m_stream.readInt();
+		m_iVersion = readNumber();
+		return iMagic;
+	}
+
+	public int getVersion()
+	{
+		return m_iVersion;
+	}
+
+	public int readNumber() throws IOException
+	{
+		int iBits = 0;
+
+		for (int iShift = 0; ; iShift += 7)
+		{
+			int iByte = m_stream.readUnsignedByte();
+			iBits |= (iByte & 0x7F) << iShift;
+			if (0==(iByte & 0x80)) break;
+			if (28<=iShift) throw new IOException("Number too long");
+		}
+
+		return (iBits >>> 1) ^ -(iBits & 1);
+	}
+
+	public boolean readFlag() throws IOException
+	{
+		return m_stream.readBoolean();
+	}
+
+	public String readText() throws IOException
+	{
+		if (!readFlag()) return null;
+		return m_stream.readUTF();
+	}
+
+	public String readName() throws IOException
+	{
+		return m_stream.readUTF();
+	}
+
+	/** The record of a field of the model {skipped when the field is null} */
+
+	public SFXFieldInput readField(SFXBase field) throws IOException
+	{
+		byte[] abRecord = readRecord();
+		if (null!=field) readRecord(field, abRecord, m_iVersion);
+		return this;
+	}
+
+	/** A record of the length read first {a length past the end of the data is turned down once the data ends} */
+
+	public byte[] readRecord() throws IOException
+	{
+		int iLength = readNumber();
+		if (0>iLength) throw new IOException("Record length " + iLength);
+
+		// Read a block at a time so a length the data does not have is not held all at once
+		byte[] abRecord = new byte[Math.min(iLength, _BLOCK)];
+		for (int iRead = 0; iRead<iLength; iRead = abRecord.length)
+		{
+			if (iRead==abRecord.length) abRecord = Arrays.copyOf(abRecord, (int) Math.min(iLength, 2L * iRead));
+			m_stream.readFully(abRecord, iRead, abRecord.length - iRead);
+		}
+
+		return abRecord;
+	}
+
+	/** Read a record written by a field of the version given back into the field */
+
+	public static void readRecord(SFXBase field, byte[] abRecord, int iVersion) throws IOException
+	{
+		field.readField(new SFXFieldInput(abRecord, iVersion));
+	}
+
+	/** Class of a field contained in a composite {null when the same as the field before} */
+
+	public Class<? extends SFXBase> readContent() throws IOException
+	{
+		String scClass = readText();
+		if (null==scClass) return null;
+
+		try
+		{
+			return Class.forName(SFXBase.class.getPackage().getName() + "." + scClass).asSubclass(SFXBase.class);
+		}
+		catch (ClassNotFoundException x)
+		{
+			throw new IOException("No field " + scClass);
+		}
+		catch (ClassCastException x)
+		{
+			throw new IOException("Not a field " + scClass);
+		}
+	}
+}
@@ -0,0 +1,363 @@
+package sfx;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Journal of the changes made to a model since it was last saved, kept beside
+ * the file of the model {or in the home directory for a model not yet saved}
+ * so the changes are not lost if the editor is not closed properly.
+ *
+ * The journal listens to the model and after each wave appends the fields
+ * the wave changed whose record changed with the record before and after,
+ * so each change to the model costs the records of the fields the user set
+ * {fields calculated from them are not written} on the writer thread.  The journal
+ * starts with the whole model and is written again as the whole model once
+ * enough changes have been appended so it does not keep growing.
+ *
+ *   header    magic SFXJ, version of the records {see SFXModelFile}
+ *   snapshot  length then the model in the model file form
+ *   changes   for each its name, the record before then the record after
+ *
+ * Reading the journal reads the snapshot then applies the changes in turn.
+ * A change cut short by the editor stopping is dropped and so are the changes
+ * from one that cannot be read or whose record before is not the record the
+ * changes before left.
+ *
+ * When changes cannot be appended the stream is dropped without writing what
+ * it still holds, so the next changes start the journal again from the whole
+ * model rather than follow a change half written, and the listener is told.
+ */
+
+public class SFXModelJournal implements SFXModelListener, Runnable
+{
+	private static final int _MAGIC = 0x5346584A; // SFXJ
+	private static final String _JOURNAL = ".journal";
+	private static final String _UNTITLED = "Untitled.sfx";
+	// Changes appended before the journal is written again from the model
+	private static final int _COMPACT = 256;
+
+	private SFXModel m_dataModel = null;
+	private File m_fileJournal = null;
+	// Records of the fields as the journal has them so far
+	private Map<String, byte[]> m_mapRecords = null;
+	// Name of each field of the model and those changed in the wave
+	private Map<SFXBase, String> m_mapNames = null;
+	private Set<String> m_setChanged = new LinkedHashSet<String>();
+	private boolean m_zReplaced = false;
+	private OutputStream m_streamJournal = null;
+	private FileOutputStream m_streamFile = null;
+	private SFXFieldOutput m_output = null;
+	private int m_iChanges = 0;
+	// Told when changes cannot be written {once until they can be again}
+	private SFXSaveListener m_listener = null;
+	private boolean m_zFailed = false;
+	private boolean m_zWritten = false;
+
+	/** Journal for the file of a model {null for a model not saved} */
+
+	public static File getJournalFile(File fileModel)
+	{
+		if (null==fileModel) return new File(System.getProperty("user.home"), _UNTITLED + _JOURNAL);
+		return new File(fileModel.getPath() + _JOURNAL);
+	}
+
+	/** Keep the journal of the changes to the model from now on {nothing is written until the model is changed} */
+
+	public SFXModelJournal createJournal(SFXModel dataModel, File fileJournal) throws IOException
+	{
+		return createJournal(dataModel, fileJournal, null);
+	}
+
+	/** Keep the journal telling the listener when the changes cannot be written */
+
+	public SFXModelJournal createJournal(SFXModel dataModel, File fileJournal, SFXSaveListener listener) throws IOException
+	{
+		m_listener = listener;
+		m_dataModel = dataModel;
+		m_fileJournal = fileJournal;
+		m_mapRecords = dataModel.getRecords();
+		m_mapNames = dataModel.getNames();
+		dataModel.addListener(this);
+		return this;
+	}
+
+	/** Stop keeping the journal {the file is left to be read if the editor is not closed properly} */
+
+	public void close() throws IOException
+	{
+		m_dataModel.removeListener(this);
+		closeStream();
+	}
+
+	public File getFile()
+	{
+		return m_fileJournal;
+	}
+
+	/** True once the journal has written its file */
+
+	public boolean isWritten()
+	{
+		return m_zWritten;
+	}
+
+	/** Stop keeping the journal and remove its file {once the changes are saved or discarded} */
+
+	public boolean delete() throws IOException
+	{
+		close();
+		return !m_fileJournal.exists() || m_fileJournal.delete();
+	}
+
+	/** A new model with the changes read from the journal {null when there is no journal} */
+
+	public static SFXModel readJournal(File fileJournal) throws IOException
+	{
+		if (!fileJournal.isFile()) return null;
+
+		InputStream stream = new BufferedInputStream(new FileInputStream(fileJournal));
+		try
+		{
+			SFXFieldInput input = new SFXFieldInput(stream);
+			if (_MAGIC!=input.readHeader()) throw new IOException("Not an SFX journal");
+
+			int iVersion = input.getVersion();
+			if (SFXModelFile._VERSION<iVersion) throw new IOException("Journal version " + iVersion);
+
+			SFXModel dataModel = SFXModelFile.readModel(new ByteArrayInputStream(input.readRecord()));
+
+			// The dependents of the fields changed are recalculated once at the end
+			dataModel.beginBatch();
+			try
+			{
+				readChanges(dataModel, input, iVersion);
+			}
+			finally
+			{
+				dataModel.commit();
+			}
+
+			return dataModel;
+		}
+		finally
+		{
+			stream.close();
+		}
+	}
+
+	/** Move a journal that cannot be read out of the way of the next journal {returns where it is kept, null if it could not be moved} */
+
+	public static File keepJournal(File fileJournal)
+	{
+		for (int iKept = 1; ; ++iKept)
+		{
+			File fileKept = new File(fileJournal.getPath() + "." + iKept);
+			if (fileKept.exists()) continue;
+			return fileJournal.renameTo(fileKept)?fileKept:null;
+		}
+	}
+
+	private static int readChanges(SFXModel dataModel, SFXFieldInput input, int iVersion) throws IOException
+	{
+		Map<String, byte[]> mapRecords = dataModel.getRecords();
+		int iChanges = 0;
+
+		try
+		{
+			for (;; ++iChanges)
+			{
+				String scField = input.readName();
+				byte[] abBefore = input.readRecord();
+				byte[] abAfter = input.readRecord();
+
+				// The journal no longer follows from the snapshot
+				if (mapRecords.containsKey(scField) && !Arrays.equals(abBefore, mapRecords.get(scField))) break;
+
+				mapRecords.put(scField, abAfter);
+				dataModel.readField(scField, abAfter, iVersion);
+			}
+		}
+		catch (IOException x)
+		{
+			// The end of the journal, a change cut short or one written over by a failed append
+		}
+
+		return iChanges;
+	}
+
+	/* ======================================================================
+	   Appending the changes once each wave is finished
+	   ====================================================================== */
+
+	@Override
+	public void run()
+	{
+		try
+		{
+			appendChanges();
+			m_zFailed = false;
+		}
+		catch (IOException x)
+		{
+			if (m_zFailed || null==m_listener) return;
+
+			m_zFailed = true;
+			m_listener.failedSave(m_fileJournal, x);
+		}
+	}
+
+	/** Append the fields changed since the last changes appended {returns the number of fields} */
+
+	public int appendChanges() throws IOException
+	{
+		if (m_zReplaced)
+		{
+			// The fields of the model are not the fields named before
+			m_mapNames = m_dataModel.getNames();
+			m_setChanged.addAll(m_mapNames.values());
+			m_zReplaced = false;
+		}
+
+		// Only the fields the wave told of are written again
+		Map<String, byte[]> mapRecords = new LinkedHashMap<String, byte[]>();
+		for (String scField : m_setChanged)
+		{
+			SFXBase field = m_dataModel.getField(scField);
+			if (!field.isSaved()) continue;
+
+			byte[] abRecord = SFXFieldOutput.getRecord(field);
+			if (!Arrays.equals(abRecord, m_mapRecords.get(scField))) mapRecords.put(scField, abRecord);
+		}
+
+		m_setChanged.clear();
+		if (mapRecords.isEmpty()) return 0;
+
+		try
+		{
+			// The snapshot already has the changes
+			if (null==m_output || _COMPACT<=m_iChanges) writeSnapshot();
+			else
+			{
+				for (Map.Entry<String, byte[]> entry : mapRecords.entrySet())
+					m_output.writeName(entry.getKey()).writeRecord(m_mapRecords.get(entry.getKey())).writeRecord(entry.getValue());
+
+				m_output.flush();
+				m_iChanges += mapRecords.size();
+			}
+		}
+		catch (IOException x)
+		{
+			// The next changes write the snapshot again rather than append after what is half written
+			dropStream();
+			throw x;
+		}
+
+		m_mapRecords.putAll(mapRecords);
+		return mapRecords.size();
+	}
+
+	private void writeSnapshot() throws IOException
+	{
+		closeStream();
+
+		ByteArrayOutputStream streamJournal = new ByteArrayOutputStream(1024);
+		new SFXFieldOutput(streamJournal).writeHeader(_MAGIC, SFXModelFile._VERSION).writeRecord(SFXModelFile.getBytes(m_dataModel)).flush();
+
+		// Replaced in one step so the journal is whole at any time
+		SFXModelFile.writeFile(streamJournal.toByteArray(), m_fileJournal);
+		m_zWritten = true;
+
+		m_streamFile = new FileOutputStream(m_fileJournal, true);
+		m_streamJournal = new BufferedOutputStream(m_streamFile);
+		m_output = new SFXFieldOutput(m_streamJournal);
+		m_iChanges = 0;
+	}
+
+	private void closeStream() throws IOException
+	{
+		if (null==m_streamJournal) return;
+
+		m_streamJournal.close();
+		m_streamJournal = null;
+		m_streamFile = null;
+		m_output = null;
+	}
+
+	// Closed under the buffer so what the buffer still holds is not written after a failure
+	private void dropStream()
+	{
+		if (null!=m_streamFile)
+		{
+			try
+			{
+				m_streamFile.close();
+			}
+			catch (IOException x)
+			{
+				// The file is let go of either way
+			}
+		}
+
+		m_streamJournal = null;
+		m_streamFile = null;
+		m_output = null;
+	}
+
+	/* ======================================================================
+	   Model listener
+	   ====================================================================== */
+
+	private boolean appendAfterWave(SFXBase field)
+	{
+		// A field in a composite is written with the field it is in
+		SFXBase fieldModel = field;
+		while (null!=fieldModel.getParent()) fieldModel = fieldModel.getParent();
+
+		String scField = m_mapNames.get(fieldModel);
+		if (null==scField) m_zReplaced = true;
+		else if (fieldModel.isSaved()) m_setChanged.add(scField);
+
+		// Any number of changes in the wave are appended together
+		return SFXChangeWave.afterWave(this);
+	}
+
+	@Override
+	public boolean addField(SFXBase fieldAdded)
+	{
+		return appendAfterWave(fieldAdded);
+	}
+
+	@Override
+	public boolean changedField(SFXBase field)
+	{
+		return appendAfterWave(field);
+	}
+
+	@Override
+	public boolean replaceField(SFXBase fieldReplace, SFXBase fieldWith)
+	{
+		// The names are found again once the model has the new fields
+		m_zReplaced = true;
+		return SFXChangeWave.afterWave(this);
+	}
+
+	@Override
+	public boolean removeField(SFXBase fieldRemoved)
+	{
+		return appendAfterWave(fieldRemoved);
+	}
+}
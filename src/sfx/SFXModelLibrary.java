@@ -0,0 +1,233 @@
+package sfx;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A library of spells in the one file.
+ * The spells are kept in the model file form one after the other with an
+ * index of where each is at the end, so listing the spells only reads the
+ * index while opening a spell only reads its own bytes.
+ *
+ *   header    magic SFXL, version
+ *   spells    each spell in the model file form {see SFXModelFile}
+ *   index     count then for each spell its name, offset and length
+ *   trailer   offset of the index then the magic {four bytes each}
+ *
+ * Spells are known by their name so saving a spell with the name of one in
+ * the library replaces it.  Saving writes the library again beside the file
+ * with the other spells copied as they are and then moves it over the file.
+ *
+ * The file is only open while it is read and is not mapped.  Windows cannot
+ * replace a file while a mapping of it is alive, and a mapping is only let
+ * go when the buffer is collected, so a mapped library could not be saved
+ * into there.
+ */
+
+public class SFXModelLibrary
+{
+	private static final int _MAGIC = 0x5346584C; // SFXL
+	private static final int _VERSION = 1;
+	private static final int _TRAILER = 8;
+
+	private File m_file = null;
+	// Offset and length of each spell by name in the order of the library
+	private Map<String, int[]> m_mapIndex = null;
+
+	/** Read the index of the library in the file {a file not there yet is an empty library} */
+
+	public SFXModelLibrary openLibrary(File file) throws IOException
+	{
+		m_file = file;
+		m_mapIndex = new LinkedHashMap<String, int[]>();
+		if (!file.isFile()) return this;
+
+		FileChannel channel = openChannel();
+		try
+		{
+			readIndex(channel);
+		}
+		finally
+		{
+			channel.close();
+		}
+
+		return this;
+	}
+
+	/** Names of the spells in the library in alphabetical order */
+
+	public List<String> getNames()
+	{
+		List<String> listNames = new ArrayList<String>(m_mapIndex.keySet());
+		Collections.sort(listNames);
+		return listNames;
+	}
+
+	/** A new model of the spell of the name read from its bytes alone */
+
+	public SFXModel readModel(String scName) throws IOException
+	{
+		int[] aiEntry = m_mapIndex.get(scName);
+		if (null==aiEntry) throw new IOException("No spell " + scName + " in " + m_file);
+
+		FileChannel channel = openChannel();
+		try
+		{
+			return SFXModelFile.readModel(getStream(channel, aiEntry[0], aiEntry[1]));
+		}
+		finally
+		{
+			channel.close();
+		}
+	}
+
+	/** Save the model into the library under the name of the spell {the index is read again once written} */
+
+	public SFXModelLibrary writeModel(SFXModel dataModel) throws IOException
+	{
+		return writeModel(dataModel.getField("Name").getValue(), SFXModelFile.getBytes(dataModel));
+	}
+
+	/** Save the spell already in the model file form into the library under the name */
+
+	public SFXModelLibrary writeModel(String scName, byte[] abModel) throws IOException
+	{
+		File fileWriting = SFXModelFile.getWritingFile(m_file);
+		try
+		{
+			writeLibrary(fileWriting, scName, abModel);
+			SFXModelFile.replaceFile(fileWriting, m_file);
+		}
+		catch (IOException x)
+		{
+			// Nothing half written is left beside the library
+			fileWriting.delete();
+			throw x;
+		}
+
+		return openLibrary(m_file);
+	}
+
+	private void writeLibrary(File fileWriting, String scName, byte[] abModel) throws IOException
+	{
+		Map<String, int[]> mapIndex = new LinkedHashMap<String, int[]>();
+		// The library is closed before it is replaced
+		FileChannel channel = m_mapIndex.isEmpty()?null:openChannel();
+
+		try
+		{
+			FileOutputStream streamFile = new FileOutputStream(fileWriting);
+			DataOutputStream stream = new DataOutputStream(new BufferedOutputStream(streamFile));
+
+			try
+			{
+				new SFXFieldOutput(stream).writeHeader(_MAGIC, _VERSION).flush();
+
+				// The other spells are copied as they are without being read
+				for (Map.Entry<String, int[]> entry : m_mapIndex.entrySet())
+				{
+					if (entry.getKey().equals(scName)) continue;
+
+					int[] aiEntry = entry.getValue();
+					mapIndex.put(entry.getKey(), new int[] {stream.size(), aiEntry[1]});
+					stream.write(getBytes(channel, aiEntry[0], aiEntry[1]));
+				}
+
+				mapIndex.put(scName, new int[] {stream.size(), abModel.length});
+				stream.write(abModel);
+
+				int iIndex = stream.size();
+				writeIndex(new SFXFieldOutput(stream), mapIndex);
+				stream.writeInt(iIndex);
+				stream.writeInt(_MAGIC);
+
+				// On the disk before it replaces the library
+				stream.flush();
+				streamFile.getFD().sync();
+			}
+			finally
+			{
+				stream.close();
+			}
+		}
+		finally
+		{
+			if (null!=channel) channel.close();
+		}
+	}
+
+	/* ======================================================================
+	   The index and the bytes of the spells
+	   ====================================================================== */
+
+	private void readIndex(FileChannel channel) throws IOException
+	{
+		if (Integer.MAX_VALUE<channel.size()) throw new IOException("Not an SFX library " + m_file);
+
+		int iLength = (int)channel.size();
+		if (_TRAILER>iLength) throw new IOException("Not an SFX library " + m_file);
+
+		ByteBuffer bufferTrailer = ByteBuffer.wrap(getBytes(channel, iLength - _TRAILER, _TRAILER));
+		SFXFieldInput input = new SFXFieldInput(getStream(channel, 0, Math.min(iLength, 16)));
+		if (_MAGIC!=input.readHeader() || _MAGIC!=bufferTrailer.getInt(4)) throw new IOException("Not an SFX library " + m_file);
+		if (_VERSION<input.getVersion()) throw new IOException("Library version " + input.getVersion());
+
+		int iIndex = bufferTrailer.getInt(0);
+		if (0>iIndex || iLength - _TRAILER<iIndex) throw new IOException("Library index " + iIndex);
+
+		input = new SFXFieldInput(getStream(channel, iIndex, iLength - _TRAILER - iIndex));
+		for (int iSpells = input.readNumber(); 0<iSpells; --iSpells)
+		{
+			String scName = input.readName();
+			int iOffset = input.readNumber();
+			int iBytes = input.readNumber();
+			if (0>iOffset || 0>iBytes || iIndex - iBytes<iOffset) throw new IOException("Library spell " + scName);
+
+			m_mapIndex.put(scName, new int[] {iOffset, iBytes});
+		}
+	}
+
+	private static void writeIndex(SFXFieldOutput output, Map<String, int[]> mapIndex) throws IOException
+	{
+		output.writeNumber(mapIndex.size());
+		for (Map.Entry<String, int[]> entry : mapIndex.entrySet())
+			output.writeName(entry.getKey()).writeNumber(entry.getValue()[0]).writeNumber(entry.getValue()[1]);
+		output.flush();
+	}
+
+	private FileChannel openChannel() throws IOException
+	{
+		// Closing the channel closes the file
+		return new RandomAccessFile(m_file, "r").getChannel();
+	}
+
+	private byte[] getBytes(FileChannel channel, int iOffset, int iLength) throws IOException
+	{
+		// Read at the offset so the position of the channel does not matter
+		ByteBuffer buffer = ByteBuffer.allocate(iLength);
+		while (buffer.hasRemaining())
+			if (0>channel.read(buffer, iOffset + buffer.position())) throw new EOFException("Library ends in spell " + m_file);
+
+		return buffer.array();
+	}
+
+	private InputStream getStream(FileChannel channel, int iOffset, int iLength) throws IOException
+	{
+		return new ByteArrayInputStream(getBytes(channel, iOffset, iLength));
+	}
+}
@@ -0,0 +1,305 @@
+package sfx;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * The one thread that changes a model.
+ * The controls send commands for the changes the user makes in the view and
+ * these are applied in the order sent on the writer thread, so the Swing
+ * thread never waits for the fields to be recalculated.
+ *
+ * All the commands waiting when the writer is ready are applied together in
+ * one batch {e.g. a run of +/- clicks} so the dependents are recalculated and
+ * the view is sent the fields that changed once for all of them.  A change of
+ * units that is followed by another change of units of the same field before
+ * it is applied is dropped.  The view is told of the changes from the writer
+ * and waits for Swing to show them before the writer carries on.
+ *
+ * Commands that need the whole model up to date {e.g. saving} are not batched
+ * but run on their own after the commands before them are applied.
+ */
+
+public class SFXModelWriter implements Runnable
+{
+	private SFXModel m_dataModel = null;
+	private LinkedList<SFXCommand> m_listCommands = null;
+	private Thread m_threadWriter = null;
+
+	public SFXModelWriter createWriter(SFXModel dataModel)
+	{
+		m_dataModel = dataModel;
+		m_listCommands = new LinkedList<SFXCommand>();
+
+		// Does not keep the application running once the view is closed
+		m_threadWriter = new Thread(this, "SFX model writer");
+		m_threadWriter.setDaemon(true);
+		m_threadWriter.start();
+
+		return this;
+	}
+
+	/** Queue the command for the writer {returns immediately} */
+
+	public SFXModelWriter submit(SFXCommand command)
+	{
+		synchronized (m_listCommands)
+		{
+			if (!m_listCommands.isEmpty() && m_listCommands.getLast().mergeCommand(command)) return this;
+
+			m_listCommands.add(command);
+			m_listCommands.notifyAll();
+		}
+		return this;
+	}
+
+	public SFXModelWriter submit(Runnable runCommand)
+	{
+		return submit(new SFXCommandRun(runCommand));
+	}
+
+	public boolean isWriter()
+	{
+		return Thread.currentThread()==m_threadWriter;
+	}
+
+	/* ======================================================================
+	   Writer thread
+	   ====================================================================== */
+
+	@Override
+	public void run()
+	{
+		for (List<SFXCommand> listCommands = takeCommands(); null!=listCommands; listCommands = takeCommands())
+			applyCommands(listCommands);
+	}
+
+	private List<SFXCommand> takeCommands()
+	{
+		synchronized (m_listCommands)
+		{
+			while (m_listCommands.isEmpty())
+			{
+				try
+				{
+					m_listCommands.wait();
+				}
+				catch (InterruptedException x)
+				{
+					return null;
+				}
+			}
+
+			List<SFXCommand> listCommands = new ArrayList<SFXCommand>(m_listCommands);
+			m_listCommands.clear();
+			return listCommands;
+		}
+	}
+
+	private boolean applyCommands(List<SFXCommand> listCommands)
+	{
+		for (int iIndex = 0, iTotal = listCommands.size(); iIndex<iTotal;)
+		{
+			if (!listCommands.get(iIndex).joinBatch())
+			{
+				applyCommand(listCommands.get(iIndex++));
+				continue;
+			}
+
+			// The commands next to each other that only set fields share the one batch
+			m_dataModel.beginBatch();
+			try
+			{
+				for (; iIndex<iTotal && listCommands.get(iIndex).joinBatch(); ++iIndex)
+					applyCommand(listCommands.get(iIndex));
+			}
+			finally
+			{
+				m_dataModel.commit();
+			}
+		}
+
+		return true;
+	}
+
+	private boolean applyCommand(SFXCommand command)
+	{
+		try
+		{
+			return command.execute();
+		}
+		catch (RuntimeException x)
+		{
+			// Carry on with the commands after a failure
+			x.printStackTrace();
+			return false;
+		}
+	}
+}
+
+/* ==========================================================================
+   Commands sent to the writer
+   ========================================================================== */
+
+abstract class SFXCommand
+{
+	public abstract boolean execute();
+
+	/** Commands that only set fields are applied in a batch with those next to them */
+
+	public boolean joinBatch()
+	{
+		return true;
+	}
+
+	/** Take in the next command if it makes it unnecessary {true when the next is not to be queued} */
+
+	public boolean mergeCommand(SFXCommand commandNext)
+	{
+		return false;
+	}
+}
+
+class SFXCommandValue extends SFXCommand
+{
+	private SFXBase m_field = null;
+	private int m_iValue = 0;
+
+	public SFXCommandValue(SFXBase field, int iValue)
+	{
+		m_field = field;
+		m_iValue = iValue;
+	}
+
+	@Override
+	public boolean execute()
+	{
+		// Fields limit each step so +/- steps are applied one at a time rather than added together
+		m_field.setValue(m_iValue);
+		return true;
+	}
+}
+
+class SFXCommandText extends SFXCommand
+{
+	private SFXBase m_field = null;
+	private String m_scValue = null;
+
+	public SFXCommandText(SFXBase field, String scValue)
+	{
+		m_field = field;
+		m_scValue = scValue;
+	}
+
+	@Override
+	public boolean execute()
+	{
+		m_field.setValue(m_scValue);
+		return true;
+	}
+}
+
+class SFXCommandMultiplier extends SFXCommand
+{
+	private SFXValue m_field = null;
+	private int m_iMultiplier = 0;
+
+	public SFXCommandMultiplier(SFXBase field, int iMultiplier)
+	{
+		m_field = (SFXValue) field;
+		m_iMultiplier = iMultiplier;
+	}
+
+	@Override
+	public boolean execute()
+	{
+		m_field.setMultiplierIndex(m_iMultiplier);
+		return true;
+	}
+
+	@Override
+	public boolean mergeCommand(SFXCommand commandNext)
+	{
+		// Only the last of the units chosen is needed
+		if (!(commandNext instanceof SFXCommandMultiplier)) return false;
+		SFXCommandMultiplier commandMultiplier = (SFXCommandMultiplier) commandNext;
+		if (commandMultiplier.m_field!=m_field) return false;
+
+		m_iMultiplier = commandMultiplier.m_iMultiplier;
+		return true;
+	}
+}
+
+class SFXCommandDuplicate extends SFXCommand
+{
+	private SFXBase m_field = null;
+
+	public SFXCommandDuplicate(SFXBase field)
+	{
+		m_field = field;
+	}
+
+	@Override
+	public boolean execute()
+	{
+		try
+		{
+			SFXComposite composite = (SFXComposite) m_field.getParent();
+			Class<? extends SFXBase> classField = m_field.getClass();
+			SFXBase instanceField = classField.getDeclaredConstructor().newInstance();
+			// Internal composition responsibility of parent
+			composite.addField(instanceField);
+		}
+		catch (ReflectiveOperationException x)
+		{
+			x.printStackTrace();
+			return false;
+		}
+
+		return true;
+	}
+}
+
+class SFXCommandRemove extends SFXCommand
+{
+	private SFXBase m_field = null;
+
+	public SFXCommandRemove(SFXBase field)
+	{
+		m_field = field;
+	}
+
+	@Override
+	public boolean execute()
+	{
+		SFXComposite composite = (SFXComposite) m_field.getParent();
+		composite.removeField(m_field);
+		return true;
+	}
+}
+
+/** Any other work on the model {loading, saving ...} run on its own */
+
+class SFXCommandRun extends SFXCommand
+{
+	private Runnable m_runCommand = null;
+
+	public SFXCommandRun(Runnable runCommand)
+	{
+		m_runCommand = runCommand;
+	}
+
+	@Override
+	public boolean execute()
+	{
+		m_runCommand.run();
+		return true;
+	}
+
+	@Override
+	public boolean joinBatch()
+	{
+		return false;
+	}
+}
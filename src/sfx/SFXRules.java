@@ -0,0 +1,376 @@
+package sfx;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registry of the rule tables giving the offsets and labels of the multipliers.
+ * The tables are written in resources/Rules.txt and compiled by main into the
+ * binary resources/Rules.sfxr which is read in one go the first time a
+ * multiplier is made, e.g.
+ *
+ *   java -cp bin sfx.SFXRules src/resources/Rules.txt src/resources/Rules.sfxr
+ *
+ * A variant rule set is used instead when the sfx.rules property names a file
+ * {either compiled or text} so the rules can be changed without recompiling
+ *
+ * House rules are further rule sets known by name that a model can be priced
+ * with {see SFXModel.setProfile}.  The rules for a name are read from the file
+ * given by the property sfx.rules.<name> or else resources/Rules-<name>.sfxr
+ * {or .txt} or can be given with addRules.  Each rule set has its own tables
+ * and multipliers
+ */
+
+public class SFXRules
+{
+	private static final int _MAGIC = 0x53465852; // SFXR
+	private static final int _VERSION = 1;
+
+	private static final String _PROPERTY_RULES = "sfx.rules";
+	private static final String _RESOURCE_RULES = "resources/Rules";
+	private static final String _COMPILED = ".sfxr";
+	private static final String _TEXT = ".txt";
+
+	// Values of the steps of the value tables {see SFXTable}
+	public static final String _PROGRESSION = "Progression";
+
+	private static SFXRules sm_rules = null;
+	// House rules by name
+	private static final Map<String, SFXRules> sm_mapProfiles = new ConcurrentHashMap<String, SFXRules>();
+
+	private String m_scProfile = null;
+	// Tables by name {the multiplier class without SFX}
+	private Map<String, SFXRule> m_mapRules = null;
+	private volatile float[] m_afProgression = null;
+	// Value tables and multipliers made with these rules
+	private Map<String, SFXTable> m_mapTables = new ConcurrentHashMap<String, SFXTable>();
+	private Map<Class<?>, SFXTableMultiplier> m_mapMultipliers = new ConcurrentHashMap<Class<?>, SFXTableMultiplier>();
+
+	/** The standard rules */
+
+	public static synchronized SFXRules getRules()
+	{
+		if (null==sm_rules) sm_rules = new SFXRules().createRules(System.getProperty(_PROPERTY_RULES), _RESOURCE_RULES);
+		return sm_rules;
+	}
+
+	/** The house rules of the name {null for the standard rules} */
+
+	public static SFXRules getRules(String scProfile)
+	{
+		if (null==scProfile) return getRules();
+
+		SFXRules rules = sm_mapProfiles.get(scProfile);
+		if (null!=rules) return rules;
+
+		rules = new SFXRules().createRules(System.getProperty(_PROPERTY_RULES + "." + scProfile), _RESOURCE_RULES + "-" + scProfile);
+		rules.m_scProfile = scProfile;
+
+		// Another thread may have read the same rules first
+		SFXRules rulesRegistered = sm_mapProfiles.putIfAbsent(scProfile, rules);
+		return null==rulesRegistered?rules:rulesRegistered;
+	}
+
+	/** Read the house rules of the name from the file {replacing any read before} */
+
+	public static SFXRules addRules(String scProfile, String scFile)
+	{
+		SFXRules rules = new SFXRules().createRules(scFile, null);
+		rules.m_scProfile = scProfile;
+		sm_mapProfiles.put(scProfile, rules);
+		return rules;
+	}
+
+	/** Compile the text rules given by the first argument into the file given by the second */
+
+	public static void main(String[] args)
+	{
+		if (2!=args.length)
+		{
+			System.err.println("Usage: SFXRules <rules text> <compiled rules>");
+			return;
+		}
+
+		try
+		{
+			SFXRules rules = new SFXRules().readRules(readBytes(new FileInputStream(args[0])));
+			DataOutputStream stream = new DataOutputStream(new FileOutputStream(args[1]));
+			try
+			{
+				rules.writeRules(stream);
+			}
+			finally
+			{
+				stream.close();
+			}
+		}
+		catch (IOException x)
+		{
+			x.printStackTrace();
+		}
+	}
+
+	/** Name of the house rules {null for the standard rules} */
+
+	public String getProfile()
+	{
+		return m_scProfile;
+	}
+
+	public SFXRule getRule(String scName)
+	{
+		SFXRule rule = m_mapRules.get(scName);
+		if (null==rule) throw new RuntimeException("No rule table " + scName);
+		return rule;
+	}
+
+	/** Values of the steps the value tables go up in */
+
+	public float[] getProgression()
+	{
+		if (null==m_afProgression)
+		{
+			String[] ascValues = getRule(_PROGRESSION).getNames();
+			float[] afProgression = new float[ascValues.length];
+			for (int iIndex = 0; iIndex<ascValues.length; ++iIndex)
+				afProgression[iIndex] = Float.parseFloat(ascValues[iIndex]);
+			m_afProgression = afProgression;
+		}
+		return m_afProgression;
+	}
+
+	Map<String, SFXTable> getTables()
+	{
+		return m_mapTables;
+	}
+
+	Map<Class<?>, SFXTableMultiplier> getMultipliers()
+	{
+		return m_mapMultipliers;
+	}
+
+	/* ======================================================================
+	   Loading the rules
+	   ====================================================================== */
+
+	private SFXRules createRules(String scFile, String scResource)
+	{
+		try
+		{
+			if (null!=scFile) return readRules(readBytes(new FileInputStream(scFile)));
+
+			// Fall back to the text when the compiled rules have not been made
+			InputStream stream = getClass().getClassLoader().getResourceAsStream(scResource + _COMPILED);
+			if (null==stream) stream = getClass().getClassLoader().getResourceAsStream(scResource + _TEXT);
+			if (null==stream) throw new RuntimeException("No rules " + scResource + _COMPILED);
+			return readRules(readBytes(stream));
+		}
+		catch (IOException x)
+		{
+			throw new RuntimeException(x);
+		}
+	}
+
+	private static byte[] readBytes(InputStream stream) throws IOException
+	{
+		try
+		{
+			ByteArrayOutputStream streamBytes = new ByteArrayOutputStream(4096);
+			byte[] abBuffer = new byte[4096];
+			for (int iRead = stream.read(abBuffer); 0<=iRead; iRead = stream.read(abBuffer))
+				streamBytes.write(abBuffer, 0, iRead);
+			return streamBytes.toByteArray();
+		}
+		finally
+		{
+			stream.close();
+		}
+	}
+
+	private SFXRules readRules(byte[] abRules) throws IOException
+	{
+		m_mapRules = new LinkedHashMap<String, SFXRule>();
+
+		DataInputStream stream = new DataInputStream(new ByteArrayInputStream(abRules));
+		if (4<=abRules.length && _MAGIC==stream.readInt()) return readCompiled(stream);
+		return readText(new String(abRules, "ISO-8859-1"));
+	}
+
+	private SFXRules readCompiled(DataInputStream stream) throws IOException
+	{
+		int iVersion = stream.readShort();
+		if (_VERSION!=iVersion) throw new IOException("Rules version " + iVersion);
+
+		for (int iTables = stream.readShort(); 0<iTables; --iTables)
+		{
+			String scName = stream.readUTF();
+			int[] aiOffsets = new int[stream.readShort()];
+			String[] ascNames = new String[stream.readShort()];
+			String[][] aascColumns = new String[aiOffsets.length][stream.readShort()];
+
+			for (int iIndex = 0; iIndex<aiOffsets.length; ++iIndex)
+				aiOffsets[iIndex] = stream.readShort();
+			for (int iIndex = 0; iIndex<ascNames.length; ++iIndex)
+				ascNames[iIndex] = stream.readUTF();
+			for (String[] ascColumns : aascColumns)
+				for (int iColumn = 0; iColumn<ascColumns.length; ++iColumn)
+					ascColumns[iColumn] = stream.readUTF();
+
+			m_mapRules.put(scName, new SFXRule(aiOffsets, ascNames, aascColumns));
+		}
+
+		return this;
+	}
+
+	private SFXRules readText(String scRules) throws IOException
+	{
+		String scName = null;
+		List<String[]> listRows = new ArrayList<String[]>();
+
+		for (String scLine : scRules.split("\r?\n"))
+		{
+			if (0==scLine.trim().length() || scLine.startsWith("#")) continue;
+
+			if (scLine.startsWith("["))
+			{
+				addRule(scName, listRows);
+				scName = scLine.substring(1, scLine.indexOf(']'));
+				listRows.clear();
+				continue;
+			}
+
+			if (null==scName) throw new IOException("Rule row before a table " + scLine);
+			listRows.add(scLine.split("\t", -1));
+		}
+
+		addRule(scName, listRows);
+		return this;
+	}
+
+	private void addRule(String scName, List<String[]> listRows) throws IOException
+	{
+		if (null==scName) return;
+
+		int[] aiOffsets = new int[listRows.size()];
+		int iNames = 0;
+		int iColumns = 0;
+
+		for (int iIndex = 0; iIndex<aiOffsets.length; ++iIndex)
+		{
+			String[] ascRow = listRows.get(iIndex);
+
+			try
+			{
+				aiOffsets[iIndex] = Integer.parseInt(ascRow[0].trim());
+			}
+			catch (NumberFormatException x)
+			{
+				throw new IOException("Rule offset " + scName + " " + ascRow[0]);
+			}
+
+			// The choices are the rows up to the first without a label
+			if (iNames==iIndex && 1<ascRow.length) ++iNames;
+			iColumns = Math.max(iColumns, ascRow.length - 2);
+		}
+
+		String[] ascNames = new String[iNames];
+		String[][] aascColumns = new String[aiOffsets.length][iColumns];
+
+		for (int iIndex = 0; iIndex<aiOffsets.length; ++iIndex)
+		{
+			String[] ascRow = listRows.get(iIndex);
+			if (iIndex<iNames) ascNames[iIndex] = ascRow[1];
+
+			// Columns left off are empty
+			Arrays.fill(aascColumns[iIndex], "");
+			for (int iColumn = 2; iColumn<ascRow.length; ++iColumn)
+				aascColumns[iIndex][iColumn - 2] = ascRow[iColumn];
+		}
+
+		m_mapRules.put(scName, new SFXRule(aiOffsets, ascNames, aascColumns));
+	}
+
+	private SFXRules writeRules(DataOutputStream stream) throws IOException
+	{
+		stream.writeInt(_MAGIC);
+		stream.writeShort(_VERSION);
+		stream.writeShort(m_mapRules.size());
+
+		for (Map.Entry<String, SFXRule> entry : m_mapRules.entrySet())
+		{
+			SFXRule rule = entry.getValue();
+			int[] aiOffsets = rule.getOffsets();
+			int iColumns = 0==aiOffsets.length?0:rule.getColumns(0).length;
+
+			stream.writeUTF(entry.getKey());
+			stream.writeShort(aiOffsets.length);
+			stream.writeShort(rule.getNames().length);
+			stream.writeShort(iColumns);
+
+			for (int iOffset : aiOffsets)
+				stream.writeShort(iOffset);
+			for (String scName : rule.getNames())
+				stream.writeUTF(scName);
+			for (int iIndex = 0; iIndex<aiOffsets.length; ++iIndex)
+				for (String scColumn : rule.getColumns(iIndex))
+					stream.writeUTF(scColumn);
+		}
+
+		return this;
+	}
+}
+
+/* ==========================================================================
+   One rule table
+   The offsets of the multiplier, the names offered as choices and any
+   further columns for each row {e.g. the basis of a skill}
+   These are shared by the multipliers so must not be changed
+   ========================================================================== */
+
+class SFXRule
+{
+	private int[] m_aiOffsets = null;
+	private String[] m_ascNames = null;
+	private String[][] m_aascColumns = null;
+
+	public SFXRule(int[] aiOffsets, String[] ascNames, String[][] aascColumns)
+	{
+		m_aiOffsets = aiOffsets;
+		m_ascNames = ascNames;
+		m_aascColumns = aascColumns;
+	}
+
+	public int[] getOffsets()
+	{
+		return m_aiOffsets;
+	}
+
+	public String[] getNames()
+	{
+		return m_ascNames;
+	}
+
+	public String[] getColumns(int iRow)
+	{
+		return m_aascColumns[iRow];
+	}
+
+	public boolean isSame(SFXRule rule)
+	{
+		if (!Arrays.equals(m_aiOffsets, rule.m_aiOffsets)) return false;
+		if (!Arrays.equals(m_ascNames, rule.m_ascNames)) return false;
+		return Arrays.deepEquals(m_aascColumns, rule.m_aascColumns);
+	}
+}
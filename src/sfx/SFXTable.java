@@ -1,84 +1,272 @@
 package sfx;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tables are never changed once made so one of each kind and size is shared
+ * by all the fields of all the models using the same rules.  The tables are
+ * held in a registry for each set of rules {see SFXRules} that can be used 
+ * from any thread and a table read from a file is swapped for the one in the
+ * registry of the standard rules
+ */
 
 public class SFXTable implements Serializable
 {
 	private static final long serialVersionUID = -6779394639303826048L;
 
-	private static SFXTable sm_tableDefault = null;
-	
 	public static SFXTable getDefaultValueTable()
 	{
-		if (null==sm_tableDefault)
+		return getTable(SFXTable.class, 100);
+	}
+	
+	public static <T extends SFXTable> T getTable(Class<T> classTable, int iRange)
+	{
+		return getTable(classTable, iRange, SFXRules.getRules());
+	}
+	
+	/** The table of the kind and size for the rules given */
+	
+	public static <T extends SFXTable> T getTable(Class<T> classTable, int iRange, SFXRules rules)
+	{
+		Map<String, SFXTable> mapTables = rules.getTables();
+		SFXTable table = mapTables.get(getKey(classTable, iRange));
+		if (null!=table) return classTable.cast(table);
+		
+		try 
 		{
-			sm_tableDefault = new SFXTable();
-			sm_tableDefault.setInitialValues(100);			
+			table = classTable.getDeclaredConstructor().newInstance();
+			table.setInitialValues(iRange, rules);
+		} 
+		catch (ReflectiveOperationException x) 
+		{
+			throw new RuntimeException(x);
 		}
-		return sm_tableDefault;
+		
+		// House rules share the standard table when the entries are the same {so fields using it are not changed}
+		SFXRules rulesStandard = SFXRules.getRules();
+		if (rulesStandard!=rules) table = internTable(table, rulesStandard.getTables());
+		
+		// Another thread may have made the same table first
+		return classTable.cast(internTable(table, mapTables));
 	}
 	
-	protected List<SFXTableEntry> m_listEntries = null;
+	private static SFXTable internTable(SFXTable table, Map<String, SFXTable> mapTables)
+	{
+		String scKey = getKey(table.getClass(), table.m_afValues.length);
+		SFXTable tableRegistered = mapTables.putIfAbsent(scKey, table);
+		if (null==tableRegistered) return table;
+		
+		// Only the same entries are shared {anything else is kept as it is}
+		if (!Arrays.equals(table.m_afValues, tableRegistered.m_afValues)) return table;
+		if (!Arrays.equals(table.m_aiCosts, tableRegistered.m_aiCosts)) return table;
+		return tableRegistered;
+	}
 	
-	public SFXTable setInitialValues(int iRange) 
+	private static String getKey(Class<?> classTable, int iRange)
 	{
-		m_listEntries = new ArrayList<SFXTableEntry>();
+		return classTable.getName() + ":" + iRange;
+	}
+	
+	// Entries of the table {the cost is the same linear value as the index}
+	protected float[] m_afValues = null;
+	protected int[] m_aiCosts = null;
+	// Number of entries from the start with values going up {the multiplier overflows for large tables}
+	private transient int m_iOrdered = 0;
+	// Value of each entry as shown so the fields do not format it each time it is read
+	private transient String[] m_ascValues = null;
+	// Content shown for the entries made when first asked for
+	private transient volatile String[] m_ascContent = null;
+	// Indexes of the table with each kind of multiplier made when first asked for
+	private transient volatile Map<Class<?>, SFXTableIndex> m_mapIndexes = null;
+	
+	// Saved as the list of entries so files saved before the table was held in arrays can still be read
+	private static final ObjectStreamField[] serialPersistentFields = {new ObjectStreamField("m_listEntries", List.class)};
+	
+	private SFXTable setInitialValues(int iRange, SFXRules rules) 
+	{
+		m_afValues = new float[iRange];
+		m_aiCosts = new int[iRange];
 		
 		// Cost goes up linearly while value goes up exponentially
-		float[] aiValues = {1, 1.5f, 2.5f, 4, 6};
+		// The rules give the value of each step and the factor the values are multiplied by after it
+		float[] aiValues = rules.getProgression();
+		int[] aiFactors = rules.getRule(SFXRules._PROGRESSION).getOffsets();
 		int iMultiplier = 1;
 		
 		for (int iCost = 0; iCost<iRange;)
 		{
 			float fValue = aiValues[iCost % aiValues.length] * iMultiplier;
 			
-			SFXTableEntry entry = new SFXTableEntry();
-			entry.setValue(iCost, fValue);
-			
-			m_listEntries.add(entry);
+			m_afValues[iCost] = fValue;
+			m_aiCosts[iCost] = iCost;
 			
-			if (0==(++iCost % aiValues.length)) iMultiplier *= 10; // e.g. range 1.. 10.. 100.. going up in aiValue steps e.g. 1000 1500 2500 4000 6000 10000
+			iMultiplier *= aiFactors[iCost++ % aiValues.length]; // e.g. range 1.. 10.. 100.. going up in aiValue steps e.g. 1000 1500 2500 4000 6000 10000
 		}
 		
+		return orderValues();
+	}
+	
+	private SFXTable orderValues()
+	{
+		m_iOrdered = 0;
+		while (m_iOrdered<m_afValues.length && (0==m_iOrdered || m_afValues[m_iOrdered-1]<m_afValues[m_iOrdered])) ++m_iOrdered;
+		
+		m_ascValues = new String[m_afValues.length];
+		for (int iIndex = 0; iIndex<m_afValues.length; ++iIndex)
+			m_ascValues[iIndex] = Float.toString(m_afValues[iIndex]);
+		
 		return this;
 	}
 	
+	/** The content is shared by all the callers so must not be changed */
+	
 	public String[] getContent() 
 	{
-		String[] ascValues = new String[m_listEntries.size()];
-		int iIndex = 0;
-		
-		for (SFXTableEntry entry : m_listEntries)
-			ascValues[iIndex++] = Float.toString(entry.getValue());
-			
-		return ascValues;
+		if (null==m_ascContent) m_ascContent = createContent();
+		return m_ascContent;
+	}
+	
+	protected String[] createContent()
+	{
+		return m_ascValues;
 	}
 
 	public float getValue(int iEntry) 
 	{
-		return m_listEntries.get(iEntry).getValue();
+		return m_afValues[iEntry];
+	}
+	
+	/** Value of the entry as text {the same string each time} */
+	
+	public String getValueText(int iEntry) 
+	{
+		return m_ascValues[iEntry];
 	}
 
 	public int getCost(int iEntry) 
 	{
-		return m_listEntries.get(iEntry).getCost();
+		return m_aiCosts[iEntry];
+	}
+
+	public int getSize()
+	{
+		return m_afValues.length;
+	}
+	
+	/** Number of entries from the start with values going up {those after are past what the table can hold} */
+	
+	public int getOrderedSize()
+	{
+		return m_iOrdered;
 	}
 
 	public boolean outRange(int iValue) 
 	{
 		if (0>iValue) return true;
-		if (m_listEntries.size()<=iValue) return true;
+		if (m_afValues.length<=iValue) return true;
 		return false;
 	}
 
 	public int closestValue(float fValue) 
 	{
-		for (SFXTableEntry entry : m_listEntries)
-			if (fValue<=entry.getValue()) return entry.getCost(); // Cost is the same linear value as the index in the table
+		// Cost of the first entry at least the value
+		// Values go up with the index so search those in order for the first entry not less than the value
+		int iLow = 0;
+		int iHigh = m_iOrdered;
+		
+		while (iLow<iHigh)
+		{
+			int iMiddle = (iLow + iHigh) >>> 1;
+			if (m_afValues[iMiddle]<fValue) iLow = iMiddle + 1;
+			else iHigh = iMiddle;
+		}
+		
+		// Not a number is never at least an entry
+		if (iLow<m_iOrdered) return fValue<=m_afValues[iLow]?m_aiCosts[iLow]:-1;
+		
+		// Check any entries after the multiplier overflowed
+		for (int iIndex = m_iOrdered; iIndex<m_afValues.length; ++iIndex)
+			if (fValue<=m_afValues[iIndex]) return m_aiCosts[iIndex];
 		return -1;
 	}
+	
+	/** Index from cost to entry and units of this table with the multiplier {shared by all the callers} */
+	
+	public SFXTableIndex getIndex(SFXTableMultiplier multiplier)
+	{
+		Map<Class<?>, SFXTableIndex> mapIndexes = m_mapIndexes;
+		
+		if (null==mapIndexes)
+		{
+			synchronized (this)
+			{
+				if (null==m_mapIndexes) m_mapIndexes = new ConcurrentHashMap<Class<?>, SFXTableIndex>();
+				mapIndexes = m_mapIndexes;
+			}
+		}
+		
+		SFXTableIndex index = mapIndexes.get(multiplier.getClass());
+		if (null!=index) return index;
+		
+		// Another thread may have made the same index first
+		index = new SFXTableIndex(this, multiplier);
+		SFXTableIndex indexRegistered = mapIndexes.putIfAbsent(multiplier.getClass(), index);
+		return null==indexRegistered?index:indexRegistered;
+	}
+	
+	/* ======================================================================
+	   Serialization keeps the form of the list of entries
+	   ====================================================================== */
+	
+	private void writeObject(ObjectOutputStream stream) throws IOException
+	{
+		List<SFXTableEntry> listEntries = new ArrayList<SFXTableEntry>(m_afValues.length);
+		
+		for (int iIndex = 0; iIndex<m_afValues.length; ++iIndex)
+		{
+			SFXTableEntry entry = new SFXTableEntry();
+			entry.setValue(m_aiCosts[iIndex], m_afValues[iIndex]);
+			listEntries.add(entry);
+		}
+		
+		ObjectOutputStream.PutField fields = stream.putFields();
+		fields.put("m_listEntries", listEntries);
+		stream.writeFields();
+	}
+	
+	@SuppressWarnings("unchecked")
+	private void readObject(ObjectInputStream stream) throws IOException, ClassNotFoundException
+	{
+		ObjectInputStream.GetField fields = stream.readFields();
+		List<SFXTableEntry> listEntries = (List<SFXTableEntry>)fields.get("m_listEntries", null);
+		
+		int iEntries = null==listEntries?0:listEntries.size();
+		m_afValues = new float[iEntries];
+		m_aiCosts = new int[iEntries];
+		
+		for (int iIndex = 0; iIndex<iEntries; ++iIndex)
+		{
+			SFXTableEntry entry = listEntries.get(iIndex);
+			m_afValues[iIndex] = entry.getValue();
+			m_aiCosts[iIndex] = entry.getCost();
+		}
+		
+		orderValues();
+	}
+	
+	protected Object readResolve()
+	{
+		return internTable(this, SFXRules.getRules().getTables());
+	}
 }
 
 /* ==========================================================================
@@ -87,6 +275,7 @@ public class SFXTable implements Serializable
    row 10 cost 10; while the entry is exponentially increasing e.g. 1, 1.5, 2.5, 4, 6, 10, ...
 
    All fields share the same table since they use their own index into the table
+   The table holds the entries in arrays and only uses these for saving
    ========================================================================== */
 
 class SFXTableEntry implements Serializable
@@ -122,9 +311,9 @@ class SFXTableCommunity extends SFXTable
 	private static final long serialVersionUID = -8002572417232253197L;
 
 	@Override
-	public String[] getContent() 
+	protected String[] createContent() 
 	{
-		String[] ascValues = new String[m_listEntries.size()];
+		String[] ascValues = new String[m_afValues.length];
 		int iIndex = 0;
 		int iLast = 0;
 		boolean zBeginning = true;
@@ -138,11 +327,11 @@ class SFXTableCommunity extends SFXTable
 		// when = 1  2   3  <
 		// push back     3-4
 		
-		for (SFXTableEntry entry : m_listEntries)
+		for (float fValue : m_afValues)
 		{
 			// Create 1, 2,  3-4, 5-6, 7-10, 11-15
 			// From   1  1.5 2.5  4    6
-			double dfNext = entry.getValue();
+			double dfNext = fValue;
 			// From   1  1.5 2.5  4    6			
 			// Ceil   1  2   3    4    6
 			dfNext = Math.ceil(dfNext);
@@ -186,7 +375,7 @@ class SFXBonus extends SFXTable
 	private static final long serialVersionUID = 6863442313751414990L;
 
 	@Override
-	public String[] getContent() 
+	protected String[] createContent() 
 	{
 		String[] ascValues = new String[] {"no bonus", "linked (+1)", "appropriate (+2)", "inventive (+3)"};
 		return ascValues;
@@ -195,47 +384,384 @@ class SFXBonus extends SFXTable
 
 /* ==========================================================================
    Table multipliers are used for values
-   They have a list of values and names and an index to show which they are using.  
-   Each name corresponds to an offset value
+   They have a list of values and names and the field has an index to show 
+   which they are using.  Each name corresponds to an offset value
 
-   Each field using a multiplier has an instance of the expected type
+   There is one multiplier of each type shared by all the fields using it
+   The offsets and names are not saved since they are the same for all
+   and are read from the rule tables {see SFXRules and resources/Rules.txt}
    ========================================================================== */
 
 class SFXTableMultiplier implements Serializable
 {
 	private static final long serialVersionUID = 4957172902341654860L;
 
+	// Index from files saved when each field had its own multiplier
 	private int m_iIndex = 0;
 	
-	protected int[] m_aiOffsets = null;
-	protected String[] m_scNames = null;
+	// Offsets and names from the rules {see SFXRules}
+	private transient String m_scRule = null;
+	protected transient SFXRule m_rule = null;
+	
+	protected SFXTableMultiplier(String scRule)
+	{
+		m_scRule = scRule;
+		m_rule = SFXRules.getRules().getRule(scRule);
+	}
+	
+	public static <T extends SFXTableMultiplier> T getMultiplier(Class<T> classMultiplier)
+	{
+		return getMultiplier(classMultiplier, SFXRules.getRules());
+	}
+	
+	/** The multiplier of the kind for the rules given */
+	
+	public static <T extends SFXTableMultiplier> T getMultiplier(Class<T> classMultiplier, SFXRules rules)
+	{
+		Map<Class<?>, SFXTableMultiplier> mapMultipliers = rules.getMultipliers();
+		SFXTableMultiplier multiplier = mapMultipliers.get(classMultiplier);
+		if (null!=multiplier) return classMultiplier.cast(multiplier);
+		
+		try 
+		{
+			multiplier = classMultiplier.getDeclaredConstructor().newInstance();
+			multiplier.m_rule = rules.getRule(multiplier.m_scRule);
+			
+			// House rules share the standard multiplier when the rule is the same {so fields using it are not changed}
+			SFXRules rulesStandard = SFXRules.getRules();
+			if (rulesStandard!=rules && multiplier.m_rule.isSame(rulesStandard.getRule(multiplier.m_scRule))) multiplier = getMultiplier(classMultiplier, rulesStandard);
+		} 
+		catch (ReflectiveOperationException x) 
+		{
+			throw new RuntimeException(x);
+		}
+		
+		// Another thread may have made the same multiplier first
+		SFXTableMultiplier multiplierRegistered = mapMultipliers.putIfAbsent(classMultiplier, multiplier);
+		if (null!=multiplierRegistered) multiplier = multiplierRegistered;
+		return classMultiplier.cast(multiplier);
+	}
+	
+	public boolean outRange(int iMultiplier)
+	{
+		if (0>iMultiplier) return true;
+		if (m_rule.getOffsets().length<=iMultiplier) return true;
+		return false;
+	}
+
+	public int getOffset(int iMultiplier)
+	{
+		return m_rule.getOffsets()[iMultiplier];
+	}
+	
+	public String getName(int iMultiplier)
+	{
+		return m_rule.getNames()[iMultiplier];
+	}
 	
-	public int getIndex()
+	public String[] getContent() 
+	{
+		return m_rule.getNames();
+	}
+	
+	int getSavedIndex()
 	{
 		return m_iIndex;
 	}
 	
-	public SFXTableMultiplier setIndex(int iMultiplier) 
+	protected Object readResolve()
 	{
-		if (0>iMultiplier) return this;
-		if (m_aiOffsets.length<=iMultiplier) return this;
-		m_iIndex = iMultiplier;
+		SFXTableMultiplier multiplier = getMultiplier(getClass());
+		if (0==m_iIndex) return multiplier;
+		
+		// Keep the index from an older file for the field to take {see SFXValue}
+		m_scRule = multiplier.m_scRule;
+		m_rule = multiplier.m_rule;
 		return this;
 	}
+}
+
+/* ==========================================================================
+   Inverse index of a table used with a multiplier
+   The cost of a value is the cost of its entry plus the offset of its units
+   so the index gives the entry and units for a cost without changing either
+   {the cost of an entry is its index in the table}
+
+   The units for a cost are found going through the choices in order up to
+   the first with an offset over the cost.  These are worked out for every
+   cost the table can give when the index is made
+   ========================================================================== */
+
+class SFXTableIndex
+{
+	private SFXTable m_Table = null;
+	private SFXTableMultiplier m_Multiplier = null;
+	
+	// Units and entry for each cost from the lowest offset up to the last entry in the largest units
+	private int m_iCostLow = 0;
+	private int[] m_aiUnits = null;
+	private int[] m_aiEntries = null;
+	// Value and units shown for each of those costs made when first asked for
+	private volatile String[] m_ascTexts = null;
+	
+	public SFXTableIndex(SFXTable table, SFXTableMultiplier multiplier)
+	{
+		m_Table = table;
+		m_Multiplier = multiplier;
+		
+		int iUnits = multiplier.getContent().length;
+		int iCostLow = 0;
+		int iCostHigh = -1;
+		
+		for (int iUnit = 0; iUnit<iUnits; ++iUnit)
+		{
+			int iOffset = multiplier.getOffset(iUnit);
+			if (0==iUnit || iOffset<iCostLow) iCostLow = iOffset;
+			if (0==iUnit || iOffset + table.getSize() - 1>iCostHigh) iCostHigh = iOffset + table.getSize() - 1;
+		}
+		
+		m_iCostLow = iCostLow;
+		m_aiUnits = new int[Math.max(0, iCostHigh - iCostLow + 1)];
+		m_aiEntries = new int[m_aiUnits.length];
+		
+		for (int iIndex = 0; iIndex<m_aiUnits.length; ++iIndex)
+		{
+			int iCost = iCostLow + iIndex;
+			m_aiUnits[iIndex] = findUnit(iCost);
+			m_aiEntries[iIndex] = iCost - multiplier.getOffset(m_aiUnits[iIndex]);
+		}
+	}
+	
+	/** Units to show the cost in */
+	
+	public int getUnit(int iCost)
+	{
+		int iIndex = iCost - m_iCostLow;
+		if (0<=iIndex && iIndex<m_aiUnits.length) return m_aiUnits[iIndex];
+		return findUnit(iCost);
+	}
+	
+	/** Entry of the table for the cost in the units given by getUnit */
+	
+	public int getEntry(int iCost)
+	{
+		int iIndex = iCost - m_iCostLow;
+		if (0<=iIndex && iIndex<m_aiEntries.length) return m_aiEntries[iIndex];
+		return iCost - m_Multiplier.getOffset(findUnit(iCost));
+	}
+	
+	/** Value and units for the cost {e.g. '2.5 hours'} */
+	
+	public String getText(int iCost)
+	{
+		String[] ascTexts = m_ascTexts;
+		
+		if (null==ascTexts)
+		{
+			ascTexts = new String[m_aiUnits.length];
+			for (int iIndex = 0; iIndex<ascTexts.length; ++iIndex)
+				ascTexts[iIndex] = formatText(m_iCostLow + iIndex);
+			m_ascTexts = ascTexts;
+		}
+		
+		int iIndex = iCost - m_iCostLow;
+		if (0<=iIndex && iIndex<ascTexts.length) return ascTexts[iIndex];
+		return formatText(iCost);
+	}
+	
+	/** Entry of the table for the cost in the units given {-1 when the cost is too low and -2 when too high} */
+	
+	public int getEntry(int iCost, int iUnit)
+	{
+		int iEntry = iCost - m_Multiplier.getOffset(iUnit);
+		if (0>iEntry) return -1;
+		if (m_Table.outRange(iEntry)) return -2;
+		return iEntry;
+	}
+	
+	/** Cost of the value in the units given {-1 when the value is past the table} */
+	
+	public int getCost(float fValue, int iUnit)
+	{
+		int iCost = m_Table.closestValue(fValue);
+		if (0>iCost) return -1;
+		return iCost + m_Multiplier.getOffset(iUnit);
+	}
+	
+	private String formatText(int iCost)
+	{
+		return String.format("%.1f %s", m_Table.getValue(getEntry(iCost)), m_Multiplier.getName(getUnit(iCost)));
+	}
+	
+	private int findUnit(int iCost)
+	{
+		int iUnits = m_Multiplier.getContent().length;
+		int iUnit = 1;
+		
+		for (; iUnit<iUnits; ++iUnit)
+			if (m_Multiplier.getOffset(iUnit)>iCost) break;
+		
+		return iUnit - 1;
+	}
+}
+
+/* ==========================================================================
+   Trade-off of weight against speed for an apportation
+   The speed that can be had in each of the units for each weight in each of
+   its units with what is left of the cost of the effect.  The cost of each
+   weight is kept for the table and multipliers and only the speeds are made
+   again when the cost of the effect changes.  Never changed once made so it
+   can be read from any thread
+   ========================================================================== */
 
-	public int getOffset()
+class SFXMoveGrid
+{
+	private SFXTable m_Table = null;
+	private SFXTableMultiplier m_multiplierMass = null;
+	private SFXTableMultiplier m_multiplierMove = null;
+	
+	// Cost of each entry in each of the weight units {-1 where the weight is past the table}
+	private int[][] m_aaiMassCosts = null;
+	
+	private int m_iEffectCost = 0;
+	// Entry of the speed for each weight units, weight entry and speed units {-1 when the speed units cost too much and -2 when the table is not large enough}
+	private int[][][] m_aaaiMoves = null;
+	// Largest weight entry for each weight units, speed units and speed entry {-1 when none can be moved that fast}
+	private int[][][] m_aaaiMaxMasses = null;
+	
+	public SFXMoveGrid(SFXTable table, SFXTableMultiplier multiplierMass, SFXTableMultiplier multiplierMove, int iEffectCost)
 	{
-		return m_aiOffsets[m_iIndex];
+		m_Table = table;
+		m_multiplierMass = multiplierMass;
+		m_multiplierMove = multiplierMove;
+		
+		SFXTableIndex indexMass = table.getIndex(multiplierMass);
+		m_aaiMassCosts = new int[multiplierMass.getContent().length][table.getSize()];
+		
+		for (int iUnit = 0; iUnit<m_aaiMassCosts.length; ++iUnit)
+			for (int iEntry = 0; iEntry<table.getSize(); ++iEntry)
+				m_aaiMassCosts[iUnit][iEntry] = indexMass.getCost(table.getValue(iEntry), iUnit);
+		
+		createMoves(iEffectCost);
 	}
 	
-	public String getName()
+	private SFXMoveGrid(SFXMoveGrid grid, int iEffectCost)
 	{
-		return m_scNames[m_iIndex];
+		m_Table = grid.m_Table;
+		m_multiplierMass = grid.m_multiplierMass;
+		m_multiplierMove = grid.m_multiplierMove;
+		m_aaiMassCosts = grid.m_aaiMassCosts;
+		
+		createMoves(iEffectCost);
 	}
 	
-	public String[] getContent() 
+	/** The grid for another cost of the effect {this grid when the cost is the same} */
+	
+	public SFXMoveGrid createGrid(int iEffectCost)
+	{
+		if (iEffectCost==m_iEffectCost) return this;
+		return new SFXMoveGrid(this, iEffectCost);
+	}
+	
+	public boolean isFor(SFXTable table, SFXTableMultiplier multiplierMass, SFXTableMultiplier multiplierMove)
+	{
+		return table==m_Table && multiplierMass==m_multiplierMass && multiplierMove==m_multiplierMove;
+	}
+	
+	public int getEffectCost()
+	{
+		return m_iEffectCost;
+	}
+	
+	/** Speed for the weight entry {negative as for getMoves} */
+	
+	public float getMove(int iEntry, int iMassUnit, int iMoveUnit)
+	{
+		int iMove = m_aaaiMoves[iMassUnit][iEntry][iMoveUnit];
+		if (0>iMove) return iMove;
+		return m_Table.getValue(iMove);
+	}
+	
+	/** Largest speed in each of the units for the weight entry {NaN where the units cost more} */
+	
+	public float[] getMaxMoves(int iEntry, int iMassUnit)
+	{
+		float[] afMoves = new float[m_aaaiMoves[iMassUnit][iEntry].length];
+		
+		for (int iMoveUnit = 0; iMoveUnit<afMoves.length; ++iMoveUnit)
+			afMoves[iMoveUnit] = getEntryMove(iEntry, iMassUnit, iMoveUnit);
+		
+		return afMoves;
+	}
+	
+	/** Largest speed in the units for the weight {NaN when it cannot be moved in those units} */
+	
+	public float getMaxMove(float fMass, int iMassUnit, int iMoveUnit)
+	{
+		// The cost of the table is the same as the entry
+		int iEntry = m_Table.closestValue(fMass);
+		if (0>iEntry) return Float.NaN;
+		return getEntryMove(iEntry, iMassUnit, iMoveUnit);
+	}
+	
+	/** Largest weight in the units that can be moved at the speed {NaN when none can} */
+	
+	public float getMaxMass(float fMove, int iMoveUnit, int iMassUnit)
 	{
-		return m_scNames;
+		int iMove = m_Table.closestValue(fMove);
+		if (0>iMove) return Float.NaN;
+		
+		int iEntry = m_aaaiMaxMasses[iMassUnit][iMoveUnit][iMove];
+		if (0>iEntry) return Float.NaN;
+		return m_Table.getValue(iEntry);
+	}
+	
+	private float getEntryMove(int iEntry, int iMassUnit, int iMoveUnit)
+	{
+		int iMove = getMaxEntry(m_aaaiMoves[iMassUnit][iEntry][iMoveUnit]);
+		if (0>iMove) return Float.NaN;
+		return m_Table.getValue(iMove);
+	}
+	
+	// Speeds past the table are as fast as the table goes
+	private int getMaxEntry(int iMove)
+	{
+		if (-2==iMove || m_Table.getOrderedSize()<=iMove) return m_Table.getOrderedSize() - 1;
+		return iMove;
+	}
+	
+	private void createMoves(int iEffectCost)
+	{
+		SFXTableIndex indexMove = m_Table.getIndex(m_multiplierMove);
+		int iSize = m_Table.getSize();
+		int iMoveUnits = m_multiplierMove.getContent().length;
+		
+		m_iEffectCost = iEffectCost;
+		m_aaaiMoves = new int[m_aaiMassCosts.length][iSize][iMoveUnits];
+		m_aaaiMaxMasses = new int[m_aaiMassCosts.length][iMoveUnits][iSize];
+		
+		for (int iMassUnit = 0; iMassUnit<m_aaiMassCosts.length; ++iMassUnit)
+		{
+			for (int iEntry = 0; iEntry<iSize; ++iEntry)
+				for (int iMoveUnit = 0; iMoveUnit<iMoveUnits; ++iMoveUnit)
+					m_aaaiMoves[iMassUnit][iEntry][iMoveUnit] = indexMove.getEntry(iEffectCost - m_aaiMassCosts[iMassUnit][iEntry], iMoveUnit);
+			
+			for (int iMoveUnit = 0; iMoveUnit<iMoveUnits; ++iMoveUnit)
+			{
+				// Heaviest weight with each speed then the heaviest with at least that speed
+				int[] aiMaxMasses = m_aaaiMaxMasses[iMassUnit][iMoveUnit];
+				Arrays.fill(aiMaxMasses, -1);
+				
+				for (int iEntry = 0; iEntry<m_Table.getOrderedSize(); ++iEntry)
+				{
+					int iMove = getMaxEntry(m_aaaiMoves[iMassUnit][iEntry][iMoveUnit]);
+					if (0<=iMove) aiMaxMasses[iMove] = Math.max(aiMaxMasses[iMove], iEntry);
+				}
+				
+				for (int iMove = iSize - 2; 0<=iMove; --iMove)
+					aiMaxMasses[iMove] = Math.max(aiMaxMasses[iMove], aiMaxMasses[iMove + 1]);
+			}
+		}
 	}
 }
 
@@ -245,13 +771,9 @@ class SFXTime extends SFXTableMultiplier
 {
 	private static final long serialVersionUID = -8419055773135666425L;
 
-	private static final int[] sm_aiTimeOffsets = {0, 9, 18, 25, 29, 32, 38};
-	private static final String[] sm_scTimeNames = {"seconds", "minutes", "hours", "days", "months", "years"};
-	
 	public SFXTime()
 	{
-		m_aiOffsets = sm_aiTimeOffsets;
-		m_scNames = sm_scTimeNames;
+		super("Time");
 	}
 }
 
@@ -259,13 +781,9 @@ class SFXDistance extends SFXTableMultiplier
 {
 	private static final long serialVersionUID = 4122606509311309514L;
 
-	private static final int[] sm_aiDistanceOffsets = {0, 15, -3, 16, 10, 11, 23, 30, 32, 33, 34, 35, 38};
-	private static final String[] sm_scDistanceNames = {"meters", "kilometers", "feet", "miles", "football field", "city block", "marathon race", "length of state", "Paris to Moscow", "NY to LA", "NY to London", "London to Tokyo", "Round the World"};
-
 	public SFXDistance()
 	{
-		m_aiOffsets = sm_aiDistanceOffsets;
-		m_scNames = sm_scDistanceNames;
+		super("Distance");
 	}
 }
 
@@ -273,13 +791,9 @@ class SFXSpeed extends SFXTableMultiplier
 {
 	private static final long serialVersionUID = -2275867279170799981L;
 
-	private static final int[] sm_aiSpeedOffsets = {0, 2, 3};
-	private static final String[] sm_scSpeedNames = {"meters per round", "kph", "mph"};
-	
 	public SFXSpeed()
 	{
-		m_aiOffsets = sm_aiSpeedOffsets;
-		m_scNames = sm_scSpeedNames;
+		super("Speed");
 	}
 }
 
@@ -287,13 +801,9 @@ class SFXWeight extends SFXTableMultiplier
 {
 	private static final long serialVersionUID = -2275867279170799981L;
 
-	private static final int[] sm_aiWeightOffsets = {0, -2, 15};
-	private static final String[] sm_scWeightNames = {"kg", "pounds", "tons"};
-	
 	public SFXWeight()
 	{
-		m_aiOffsets = sm_aiWeightOffsets;
-		m_scNames = sm_scWeightNames;
+		super("Weight");
 	}
 }
 
@@ -306,13 +816,9 @@ class SFXShape extends SFXTableMultiplier
 {
 	private static final long serialVersionUID = -3751957516200493376L;
 
-	private static final int[] sm_aiShapeOffsets = {0, 1, 3, 6};
-	private static final String[] sm_scShapeNames = {"none", "single", "any", "fluid"};
-	
 	public SFXShape()
 	{
-		m_aiOffsets = sm_aiShapeOffsets;
-		m_scNames = sm_scShapeNames;
+		super("Shape");
 	}
 }
 
@@ -320,13 +826,9 @@ class SFXSwitch extends SFXTableMultiplier
 {
 	private static final long serialVersionUID = -4656601466440078445L;
 
-	private static final int[] sm_aiSwitchOffsets = {0, 4, 8};
-	private static final String[] sm_scSwitchNames = {"none", "off", "off/on"};
-	
 	public SFXSwitch()
 	{
-		m_aiOffsets = sm_aiSwitchOffsets;
-		m_scNames = sm_scSwitchNames;
+		super("Switch");
 	}
 }
 
@@ -334,13 +836,9 @@ class SFXCommunityModifier extends SFXTableMultiplier
 {
 	private static final long serialVersionUID = -8678627936039069002L;
 
-	private static final int[] sm_aiCommunityOffsets = {1, 2, 3, 4, 5, 6, 7};
-	private static final String[] sm_scCommunityNames = {"Simple", "DN 8", "DN 10", "DN 12", "DN 14", "DN 16", "DN 18"};
-	
 	public SFXCommunityModifier()
 	{
-		m_aiOffsets = sm_aiCommunityOffsets;
-		m_scNames = sm_scCommunityNames;
+		super("CommunityModifier");
 	}
 }
 
@@ -348,13 +846,9 @@ class SFXComponent extends SFXTableMultiplier
 {
 	private static final long serialVersionUID = 5175604955710133453L;
 	
-	private static final int[] sm_aiComponentOffsets = {0, 1, 2, 3, 4, 5, 6, 7};
-	private static final String[] sm_scComponentNames = {"unset", "common, free", "common, cheap", "common, affordable", "uncommon, affordable", "rare, expensive", "very rare, expensive", "unique, fabulously expensive"};
-	
 	public SFXComponent()
 	{
-		m_aiOffsets = sm_aiComponentOffsets;
-		m_scNames = sm_scComponentNames;
+		super("Component");
 	}	
 }
 
@@ -362,13 +856,9 @@ class SFXGesture extends SFXTableMultiplier
 {
 	private static final long serialVersionUID = -883975369148979107L;
 
-	private static final int[] sm_aiGestureOffsets = {0, 1, 2, 3, 4, 5, 6};
-	private static final String[] sm_scGestureNames = {"simple", "average", "complex", "very complex", "extremely complex", "downright hard"};
-	
 	public SFXGesture()
 	{
-		m_aiOffsets = sm_aiGestureOffsets;
-		m_scNames = sm_scGestureNames;
+		super("Gesture");
 	}	
 }
 
@@ -376,26 +866,19 @@ class SFXIncantation extends SFXTableMultiplier
 {
 	private static final long serialVersionUID = -4647693325610705542L;
 	
-	private static final int[] sm_aiIncantationOffsets = {0, 1, 2, 3, 4, 5, 6};
-	private static final String[] sm_scIncantationNames = {"none", "few words", "sentence", "incantation", "litany", "complex formula", "extensive complex elements"};
-	
 	public SFXIncantation()
 	{
-		m_aiOffsets = sm_aiIncantationOffsets;
-		m_scNames = sm_scIncantationNames;
+		super("Incantation");
 	}		
 }
 
 class SFXRelatedSkill extends SFXTableMultiplier
 {
 	private static final long serialVersionUID = -6899057804385130323L;
-	private static final int[] sm_aiRelatedOffsets = {0, 1, 2, 3, 4, 5, 6, 7};
-	private static final String[] sm_scRelatedNames = {"none", "DN 6", "DN 7", "DN 8", "DN 9", "DN 10", "DN 11", "DN 12"};
-	
+
 	public SFXRelatedSkill()
 	{
-		m_aiOffsets = sm_aiRelatedOffsets;
-		m_scNames = sm_scRelatedNames;
+		super("RelatedSkill");
 	}			
 }
 
@@ -410,52 +893,14 @@ class SFXSkill extends SFXTableMultiplier
 	public final static int _RESULT = 1;
 	public final static int _OPPOSITION = 2;
 	
-	private static final int[] sm_aiSkills = 
-	{
-			0, 
-			_NECROSCOPE, 2, 3, 
-			4, 5, _SHAMAN,
-			7, 8, 9,
-			10,
-	};
-	
-	private static final String[] sm_acSkills = 
-	{
-		"Unset", 
-		"Necroscope", "Necromancer", "Prescient", 
-		"Seer", "Sensitive",  "Shaman",  
-		"Spotter", "Telepath", "Numerancer",
-		"Witch - self",
-	};
-	
-	private static final String[][] sm_aacBasis = 
-	{
-		{"", "", ""},
-		
-		{"Charisma", "Interactive", "Confidence"},
-		{"Strength", "Interactive", "Willpower"},
-		{"Intellect", "Time", ""},
-		
-		{"Mind", "Time", ""},
-		{"Intellect", "Special", ""},
-		{"Confidence", "Damage", "Toughness (ignores armour)"},
-		
-		{"Mind", "Special", ""},
-		{"Intellect", "Interactive", "Intellect"},
-		{"", "", ""},
-		
-		{"Confidence", "Push", "Varies"},
-	};
-	
 	public SFXSkill()
 	{
-		m_aiOffsets = sm_aiSkills;
-		m_scNames = sm_acSkills;
+		super("Skill");
 	}
 	
 	public String[] getBasis(int iIndex)
 	{
-		return sm_aacBasis[iIndex];
+		return m_rule.getColumns(iIndex);
 	}
 }
 
@@ -463,20 +908,9 @@ class SFXReception extends SFXTableMultiplier
 {
 	private static final long serialVersionUID = 4697788675062000646L;
 
-	private static final int[] sm_aiReception = {0, 1, 2, 3, 4};
-	private static final String[] sm_acReception = 
-	{
-		"Unset",
-		"Feeling",
-		"INT roll",
-		"Perception roll",
-		"Automatically knows the effect"
-	};
-	
 	public SFXReception()
 	{
-		m_aiOffsets = sm_aiReception;
-		m_scNames = sm_acReception;
+		super("Reception");
 	}
 }
 
@@ -484,22 +918,9 @@ class SFXTrance extends SFXTableMultiplier
 {
 	private static final long serialVersionUID = 1594089871281644464L;
 
-	private static final int[] sm_aiTrance = {0, 1, 2, 3, 4, 5, 6};
-	private static final String[] sm_acTrance = 
-	{
-		"None",
-		"Will DN 7 to break trance",
-		"Will DN 8 to break trance",
-		"Will DN 10 to break trance",
-		"Will DN 12 to break trance",
-		"Will DN 15 to break trance",
-		"Will DN 19 to break trance",
-	};
-	
 	public SFXTrance()
 	{
-		m_aiOffsets = sm_aiTrance;
-		m_scNames = sm_acTrance;
+		super("Trance");
 	}
 }
 
@@ -507,20 +928,9 @@ class SFXLock extends SFXTableMultiplier
 {
 	private static final long serialVersionUID = 8826553961101863942L;
 
-	private static final int[] sm_aiLock = {0, 1, 2, 3, 4};
-	private static final String[] sm_acLock = 
-	{
-		"Unset",
-		"Target makes Will DN 7 or +2 modifier",
-		"Target makes Will DN 8 or +2 modifier",
-		"Target makes Will DN 10 or +2 modifier",
-		"Target makes Will DN 12 or +2 modifier"
-	};
-	
 	public SFXLock()
 	{
-		m_aiOffsets = sm_aiLock;
-		m_scNames = sm_acLock;
+		super("Lock");
 	}
 }
 
@@ -528,18 +938,9 @@ class SFXCountenance extends SFXTableMultiplier
 {
 	private static final long serialVersionUID = 1545524247731722209L;
 
-	private static final int[] sm_aiLook = {0, 1, 2};
-	private static final String[] sm_acLook = 
-	{
-		"Unset",
-		"Noticable - grey pallor, foaming mouth",
-		"Extreme - convulsions, psychic image",
-	};
-	
 	public SFXCountenance()
 	{
-		m_aiOffsets = sm_aiLook;
-		m_scNames = sm_acLook;
+		super("Countenance");
 	}
 }
 
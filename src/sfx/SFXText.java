@@ -20,6 +20,7 @@ class SFXTextBase implements SFXText
 	protected SFXTextBase m_getValue = null;
 	
 	private String m_scValue = null;
+	private SFXBase m_fieldValue = null;
 	
 	public SFXTextBase setField(SFXBase fieldContent) 
 	{
@@ -242,7 +243,7 @@ class SFXTextBase implements SFXText
 		{
 			// Want to apply the table to the value on the LHS of the expression
 			SFXTextTable tableTime = new SFXTextTable();
-			tableTime.setTable(SFXTable.getDefaultValueTable(), new SFXTime());
+			tableTime.setTable(SFXTable.getDefaultValueTable(), SFXTableMultiplier.getMultiplier(SFXTime.class));
 			tableTime.m_getValue = this;
 			return tableTime;
 		}
@@ -303,9 +304,11 @@ class SFXTextBase implements SFXText
 	public boolean hasUpdate() 
 	{
 		// Minimise updates by only responding to data that has really changed
+		// Values from tables are the same string each time so a field {e.g. a new snapshot copy} also counts as a change
 		String scValue = m_fieldContent.getValue();
-		if (scValue==m_scValue) return false;
+		if (scValue==m_scValue && m_fieldContent==m_fieldValue) return false;
 		m_scValue = scValue;
+		m_fieldValue = m_fieldContent;
 		return true;
 	}
 	
@@ -685,10 +688,8 @@ class SFXTextValueTable extends SFXTextValue
 	{
 		// This is for the case where the table has special values and getValue gives the index for these instead of a value from the table
 		SFXValue valueField = (SFXValue) m_fieldContent;
-		String scValue = valueField.getValue();
-		int iValue = Integer.parseInt(scValue);
 		String[] ascValues = valueField.getTableContent();
-		return ascValues[iValue];
+		return ascValues[valueField.getIndex()];
 	}	
 	
 	@Override
@@ -702,17 +703,28 @@ class SFXTextValueUnit extends SFXTextCost
 {
 	// Key is 'getValueUnit' for getting the SFXValue value and units (e.g. '15 seconds')
 	
+	// Last value and units shown {both are the same strings while they are unchanged}
+	private String m_scValueShown = null;
+	private String m_scUnitShown = null;
+	private String m_scShown = null;
+	
 	@Override
 	public String getValue()
 	{
 		SFXValue valueField = (SFXValue) m_fieldContent;
+		String scValue = valueField.getValue();
+		String scUnit = valueField.getUnit();
+		if (scValue==m_scValueShown && scUnit==m_scUnitShown) return m_scShown;
 		
 		StringBuilder sb = new StringBuilder();
-		sb.append(m_fieldContent.getValue());
+		sb.append(scValue);
 		sb.append(' ');
-		sb.append(valueField.getUnit());
+		sb.append(scUnit);
 		
-		return sb.toString();
+		m_scValueShown = scValue;
+		m_scUnitShown = scUnit;
+		m_scShown = sb.toString();
+		return m_scShown;
 	}	
 	
 	@Override
@@ -836,8 +848,7 @@ class SFXTextValueDefault extends SFXTextValue
 
 class SFXTextTable extends SFXTextBase
 {
-	private SFXTable m_Table = null;
-	private SFXTableMultiplier m_Multiplier = null;
+	private SFXTableIndex m_Index = null;
 	
 	@Override
 	public String getValue()
@@ -845,29 +856,13 @@ class SFXTextTable extends SFXTextBase
 		String scValue = m_getValue.getValue();
 		int iValue = Integer.parseInt(scValue);
 		
-		String[] ascContent = m_Multiplier.getContent();
-		
-		// First find the best multiplier to set units
-		int iCount = 0;
-		
-		for (iCount = 1; iCount<ascContent.length; ++iCount)
-		{
-			int iOffset = m_Multiplier.setIndex(iCount).getOffset();
-			if (iOffset>iValue) break;
-		}
-		
-		iValue -= m_Multiplier.setIndex(iCount-1).getOffset();
-		
-		// Cross reference remaining cost on the table
-		float fValue = m_Table.getValue(iValue);	
-		
-		return String.format("%.1f %s", fValue, ascContent[iCount-1]);
+		// Best units for the cost and the entry in the table for the rest of it
+		return m_Index.getText(iValue);
 	}
 	
 	public SFXTextTable setTable(SFXTable table, SFXTableMultiplier multiplier)
 	{
-		m_Table = table;
-		m_Multiplier = multiplier;
+		m_Index = table.getIndex(multiplier);
 		return this;
 	}
 	
@@ -890,12 +885,8 @@ class SFXTextMove extends SFXTextValueUnit
 	{
 		SFXValueMove valueMove = (SFXValueMove)m_fieldContent;
 		
-		float fTry = valueMove.getMass();
-		int iOffsetMass = valueMove.getMultiplierIndex();
-		int iDeltaEffectMassCost = valueMove.getDeltaEffectMassCost(fTry, iOffsetMass);
-		
 		m_iOffsetMove = getMoveOffset();
-		float fMove = valueMove.getMoveCost(iDeltaEffectMassCost, m_iOffsetMove);
+		float fMove = valueMove.getMove(valueMove.getMultiplierIndex(), m_iOffsetMove);
 		
 		StringBuilder sb = new StringBuilder();
 		
@@ -1009,7 +1000,7 @@ class SFXTextSkill extends SFXTextCost
 	@Override
 	public String getValue()
 	{
-		if (null==m_tableSkill) m_tableSkill = new SFXSkill();
+		if (null==m_tableSkill) m_tableSkill = SFXTableMultiplier.getMultiplier(SFXSkill.class);
 		SFXValue valueSkill = (SFXValue)m_fieldContent;
 		return getBasis(valueSkill.getMultiplierIndex());
 	}
@@ -444,8 +444,10 @@ public class SFXTextDescription extends SFXTextOutline implements SFXModelListen
 	{
 		// When ready to insert into listening chain set the listener for the update of this document
 		m_listFieldListeners.add(listener);
-		// ... and listen to the source data for changes
-		dataModel.addListener(this);
+		// ... and listen to the source data for changes to the fields in the document
+		dataModel.addListener(this, m_mapWrappers.keySet());
+		// The document is updated on the timer thread so reads a snapshot of the data not the fields being changed
+		dataModel.publishSnapshots();
 		
 		return this;
 	}
@@ -481,6 +483,8 @@ public class SFXTextDescription extends SFXTextOutline implements SFXModelListen
 	
 	private boolean updateDocument()
 	{
+		readSnapshot(m_dataModel.getSnapshot());
+		
 		// Possibly one of the fields has changed
 		for (Map.Entry<SFXBase, SFXTextBase> entryWrapper : m_mapWrappers.entrySet())
 			if (entryWrapper.getValue().hasUpdate()) return prepareDocument(entryWrapper);
@@ -488,6 +492,20 @@ public class SFXTextDescription extends SFXTextOutline implements SFXModelListen
 		return false;
 	}
 
+	// Point the wrappers at the copies of their fields in the snapshot {the wrappers stay mapped by the model fields}
+	private boolean readSnapshot(SFXModelSnapshot snapshot)
+	{
+		if (null==snapshot) return false;
+		
+		for (Map.Entry<SFXBase, SFXTextBase> entryWrapper : m_mapWrappers.entrySet())
+		{
+			SFXBase field = snapshot.getField(entryWrapper.getKey());
+			if (null!=field) entryWrapper.getValue().setField(field);
+		}
+		
+		return true;
+	}
+
 	// Create document from original outline by copying parts that wrappers identify as valid
 	private boolean prepareDocument(Map.Entry<SFXBase, SFXTextBase> entryWrapper)
 	{
@@ -533,12 +551,46 @@ public class SFXTextDescription extends SFXTextOutline implements SFXModelListen
 		return true;
 	}
 	
+	// The outline finds its fields in the model so is made again on the writer and only swapped in on the timer
 	private boolean reloadDocument()
 	{
-		SFXTextDescription descriptionNew = new SFXTextDescription();
-		descriptionNew.createField(m_scField);
-		descriptionNew.loadOutline(m_queryView, m_dataModel, m_scFile);
+		m_dataModel.getWriter().submit(new Runnable()
+		{
+			@Override
+			public void run() 
+			{
+				final SFXTextDescription descriptionNew = new SFXTextDescription();
+				descriptionNew.createField(m_scField);
+				descriptionNew.m_timer.cancel();
+				descriptionNew.loadOutline(m_queryView, m_dataModel, m_scFile);
+				
+				// Document may now include other fields so the fields of the outline before are no longer listened to
+				m_dataModel.removeListener(SFXTextDescription.this);
+				m_dataModel.addListener(SFXTextDescription.this, descriptionNew.m_mapWrappers.keySet());
+				
+				m_timer.cancel();
+				m_timer = new Timer();
+				
+				TimerTask task = new TimerTask()
+				{
+					@Override
+					public void run() 
+					{
+						swapOutline(descriptionNew);
+						return;
+					}
+				};
+				
+				m_timer.schedule(task, 0);
+			}
+		});
 		
+		return true;
+	}
+	
+	// The document is then updated from a snapshot as for any change
+	private boolean swapOutline(SFXTextDescription descriptionNew)
+	{
 		m_documentOutline = descriptionNew.m_documentOutline;
 		m_mapSource = descriptionNew.m_mapSource;
 		m_mapWrappers = descriptionNew.m_mapWrappers;
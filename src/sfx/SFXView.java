@@ -15,9 +15,13 @@ import java.awt.event.WindowEvent;
 import java.io.IOException;
 import java.io.InputStream;
 import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -61,6 +65,9 @@ public class SFXView implements SFXModelListener, SFXViewQuery
 	private SFXModel m_dataModel = null;
 	// Map the model to the content
 	private Map<SFXField, SFXViewField> m_mapDataContent = null;
+	// Fields changed by the model writer waiting to be shown once its wave is over
+	private Set<SFXBase> m_setChanged = null;
+	private Runnable m_postChanged = null;
 	
 	// List of controls that listen for changes shared with all the elements that are built by the view
 	private List<SFXViewListener> m_listControls = null;
@@ -81,7 +88,16 @@ public class SFXView implements SFXModelListener, SFXViewQuery
 		m_dataModel = dataModel;
 		
 		// Mapping of model to view
-		m_mapDataContent = new HashMap<SFXField, SFXViewField>();
+		m_mapDataContent = new ConcurrentHashMap<SFXField, SFXViewField>();
+		m_setChanged = new LinkedHashSet<SFXBase>();
+		m_postChanged = new Runnable()
+		{
+			@Override
+			public void run() 
+			{
+				postChanged();
+			}
+		};
 		m_listControls = new CopyOnWriteArrayList<SFXViewListener>();
 		// Add as a listener so that model has sink for events fired when first request values
 		dataModel.addListener(this);
@@ -591,6 +607,14 @@ public class SFXView implements SFXModelListener, SFXViewQuery
 		itemSave.setActionCommand("Save");
 		itemSave.addActionListener(listenerMenu);
 		
+		JMenuItem itemOpenLibrary = new JMenuItem("Open from library");
+		itemOpenLibrary.setActionCommand("Open from library");
+		itemOpenLibrary.addActionListener(listenerMenu);
+		
+		JMenuItem itemSaveLibrary = new JMenuItem("Save into library");
+		itemSaveLibrary.setActionCommand("Save into library");
+		itemSaveLibrary.addActionListener(listenerMenu);
+		
 		JMenuItem itemPrint = new JMenuItem("Print");
 		itemPrint.setActionCommand("Print");
 		itemPrint.addActionListener(listenerMenu);
@@ -604,6 +628,9 @@ public class SFXView implements SFXModelListener, SFXViewQuery
 		menuFile.add(itemOpen);
 		menuFile.add(itemSave);
 		menuFile.addSeparator();
+		menuFile.add(itemOpenLibrary);
+		menuFile.add(itemSaveLibrary);
+		menuFile.addSeparator();
 		menuFile.add(itemPrint);
 		menuFile.addSeparator();
 		menuFile.add(itemExit);
@@ -676,6 +703,11 @@ public class SFXView implements SFXModelListener, SFXViewQuery
     	return panelContent;
 	}
 	
+	public SFXModel getModel()
+	{
+		return m_dataModel;
+	}
+	
 	public SFXView frameView() 
 	{
 		m_panelContent.setPreferredSize(new Dimension(800, 600));
@@ -703,21 +735,20 @@ public class SFXView implements SFXModelListener, SFXViewQuery
 	public boolean addField(final SFXBase field) 
 	{
 		SFXComposite fieldParent = (SFXComposite)field.getParent();
-		SFXViewField swingParent = getView(fieldParent);
+		final SFXViewField swingParent = getView(fieldParent);
 		if (null==swingParent) return false;
 		
-		SFXViewField swingCreated = swingParent.createContent(field);
-		viewModel(field, swingCreated);
-		
-		final JComponent panelParent = swingParent.getPanel();
-		final JComponent panelCreated = swingCreated.getPanel();
-
 		Runnable changeField = new Runnable()
 		{
 			@Override
 			public void run() 
 			{
-				panelParent.add(panelCreated);
+				// Panels for the field are built on the Swing thread too
+				SFXViewField swingCreated = swingParent.createContent(field);
+				viewModel(field, swingCreated);
+				
+				JComponent panelParent = swingParent.getPanel();
+				panelParent.add(swingCreated.getPanel());
 				panelParent.revalidate();
 			}
 		};
@@ -748,19 +779,58 @@ public class SFXView implements SFXModelListener, SFXViewQuery
 		if (null==fieldValue) 
 			return false; // Need check because data can change behind making changes before fields are prepared
 		
-		Runnable changeField = new Runnable()
+    	if (SwingUtilities.isEventDispatchThread())
+    	{
+			fieldValue.setValue(field);
+			return true;
+    	}
+		
+		// Any other thread {the model writer} sends the fields together once the change wave is over
+		synchronized (m_setChanged)
+		{
+			m_setChanged.add(field);
+		}
+		SFXChangeWave.afterWave(m_postChanged);
+    	
+		return true;
+	}
+	
+	private boolean postChanged()
+	{
+		final List<SFXBase> listChanged;
+		synchronized (m_setChanged)
+		{
+			listChanged = new ArrayList<SFXBase>(m_setChanged);
+			m_setChanged.clear();
+		}
+		if (listChanged.isEmpty()) return false;
+		
+		Runnable changeFields = new Runnable()
 		{
 			@Override
 			public void run() 
 			{
-				fieldValue.setValue(field);
+				for (SFXBase field : listChanged)
+				{
+					SFXViewField fieldValue = getView(field);
+					if (null!=fieldValue) fieldValue.setValue(field);
+				}
 			}
 		};
 		
-    	if (SwingUtilities.isEventDispatchThread())
-			changeField.run();
-		else
-			SwingUtilities.invokeLater(changeField);
+		// Wait so the fields are not changed again while Swing is reading them
+    	try 
+    	{
+    		SwingUtilities.invokeAndWait(changeFields);
+		} 
+    	catch (InvocationTargetException x) 
+    	{
+			x.printStackTrace();
+		}
+    	catch (InterruptedException x) 
+    	{
+			x.printStackTrace();
+		}
     	
 		return true;
 	}
@@ -769,6 +839,7 @@ public class SFXView implements SFXModelListener, SFXViewQuery
 	public boolean replaceField(SFXBase fieldReplace, SFXBase fieldWith) 
 	{
 		SFXViewField fieldValue = m_mapDataContent.remove(fieldReplace);
+		if (null==fieldValue) return false;
 		m_mapDataContent.put(fieldWith, fieldValue);
 		return changedField(fieldWith);
 	}
@@ -739,16 +739,42 @@ class SFXSwingApportationMove extends SFXSwingEnable
 		return m_comboSpeedUnits.getValue();
 	}
 	
+	// Speed that can be had in each of the units for the weight
+	private String getAffordable(SFXValueMove valueMove, int iOffsetMass)
+	{
+		float[] afMoves = valueMove.getMaxMoves(iOffsetMass);
+		String[] ascUnits = valueMove.getMultiplierContentEx();
+		StringBuilder sb = new StringBuilder();
+		
+		for (int iUnit = 0; iUnit<afMoves.length; ++iUnit)
+		{
+			if (Float.isNaN(afMoves[iUnit])) continue;
+			sb.append(0==sb.length()?"Up to ":", ").append(afMoves[iUnit]).append(' ').append(ascUnits[iUnit]);
+		}
+		
+		return 0==sb.length()?null:sb.toString();
+	}
+	
+	// Heaviest weight in the units chosen that can be moved at the speed shown
+	private String getMovable(SFXValueMove valueMove, float fMove, int iOffsetMass, int iOffsetMove)
+	{
+		if (0>fMove || 0>iOffsetMass) return null;
+		
+		float fMass = valueMove.getMaxMass(fMove, iOffsetMove, iOffsetMass);
+		if (Float.isNaN(fMass)) return null;
+		
+		String[] ascUnits = valueMove.getMultiplierContent();
+		return "Up to " + fMass + " " + ascUnits[iOffsetMass] + " at this speed";
+	}
+	
 	private SFXViewField updateCalculated(SFXBase field)
 	{	
 		SFXValueMove valueMove = (SFXValueMove) field;
 		
-		float fTry = valueMove.getMass();
+		// Looked up in the grid the model keeps for the cost of the effect
 		int iOffsetMass = m_comboMassUnits.getValue();
-		int iDeltaEffectMassCost = valueMove.getDeltaEffectMassCost(fTry, iOffsetMass);
-		
 		int iOffsetMove = getMoveOffset();
-		float fMove = valueMove.getMoveCost(iDeltaEffectMassCost, iOffsetMove);
+		float fMove = valueMove.getMove(iOffsetMass, iOffsetMove);
 		
 		String scValue;
 		
@@ -758,6 +784,8 @@ class SFXSwingApportationMove extends SFXSwingEnable
 			scValue = Float.toString(fMove);	
 		
 		m_textSpeed.setText(scValue);
+		m_textSpeed.setToolTipText(getAffordable(valueMove, iOffsetMass));
+		m_comboMassUnits.setToolTipText(getMovable(valueMove, fMove, iOffsetMass, iOffsetMove));
 				
 		return this;
 	}
@@ -1765,13 +1793,15 @@ class SFXSwingTimeFV extends SFXSwingSub
 
 	private SFXTable m_timeTable = null;
 	private SFXTime m_timeMultiplier = null;
+	private SFXTableIndex m_timeIndex = null;
 	private SFXSwingText m_textUnits = null;
 	
 	@Override
 	public SFXViewField createPanel(String scLabel, List<SFXViewListener> listListeners)
 	{
 		m_timeTable = SFXTable.getDefaultValueTable();
-		m_timeMultiplier = new SFXTime();
+		m_timeMultiplier = SFXTableMultiplier.getMultiplier(SFXTime.class);
+		m_timeIndex = m_timeTable.getIndex(m_timeMultiplier);
 		return super.createPanel(scLabel, listListeners);
 	}
 	
@@ -1796,25 +1826,13 @@ class SFXSwingTimeFV extends SFXSwingSub
 	{
 		SFXDouble valueModifier = (SFXDouble)field;
 		
-		String[] ascContent = m_timeMultiplier.getContent();
-				
 		int iValueFV = valueModifier.getValueFV();
 		
-		// First find the best multiplier to set units
-		int iCount = 0;
-		
-		for (iCount = 1; iCount<ascContent.length; ++iCount)
-		{
-			int iOffset = m_timeMultiplier.setIndex(iCount).getOffset();
-			if (iOffset>iValueFV) break;
-		}
-		
-		iValueFV -= m_timeMultiplier.setIndex(iCount-1).getOffset();
-		
-		// Cross reference remaining cost on the table
-		float fValue = m_timeTable.getValue(iValueFV);		
+		// Best units for the cost and the entry in the table for the rest of it
+		int iUnit = m_timeIndex.getUnit(iValueFV);
+		float fValue = m_timeTable.getValue(m_timeIndex.getEntry(iValueFV));		
 		m_textValue.setText(Float.toString(fValue));
-		m_textUnits.setText(ascContent[iCount-1]);
+		m_textUnits.setText(m_timeMultiplier.getName(iUnit));
 		
 		// Do not call super because field is not derived from SFXValue
 		return this;
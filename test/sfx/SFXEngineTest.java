@@ -0,0 +1,197 @@
+package sfx;
+
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * The engine prices a spell as the fields of the model do: the totals of a
+ * state loaded from a spell are the totals of its fields, also once the
+ * spell is changed and loaded again into the engine compiled before, each
+ * row of the columns priced together is priced as the one state and each row
+ * of the columns of indexes is priced as the costs the fields have when set
+ * to those indexes.
+ */
+
+public class SFXEngineTest extends SFXTest
+{
+	private static final int _SEEDS = 300;
+	// More rows than are evaluated in a block so the last block is short
+	private static final int _ROWS = 600;
+	private static final String[] _SWEPT = {"Effect", "Range", "Duration", "Casting"};
+	private static final int _SAMPLED = 50;
+
+	public static void main(String[] ascArguments) throws IOException
+	{
+		testTotals();
+		testChanged();
+		testColumns();
+		testIndexes();
+		finish("SFXEngineTest");
+	}
+
+	private static void checkTotals(SFXModel dataModel, SFXEngine engine, int[] aiState, String scCheck)
+	{
+		SFXDouble fieldTotal = (SFXDouble) dataModel.getField("Total");
+		SFXDouble fieldSpecific = (SFXDouble) dataModel.getField("Specific");
+		String scModel = fieldTotal.getValueDN() + "/" + fieldTotal.getValueFV() + " " + fieldSpecific.getValueDN() + "/" + fieldSpecific.getValueFV();
+		String scEngine = engine.getTotalDN(aiState) + "/" + engine.getTotalFV(aiState) + " " + engine.getSpecificDN(aiState) + "/" + engine.getSpecificFV(aiState);
+		checkEquals(scModel, scEngine, scCheck);
+	}
+
+	/** The totals of the engine are the totals of the fields */
+
+	private static void testTotals()
+	{
+		checkTotals(new SFXModel().createModel(), "new spell");
+
+		for (int iSeed=0; iSeed<_SEEDS; ++iSeed)
+			checkTotals(createModel(iSeed), "totals " + iSeed);
+	}
+
+	private static void checkTotals(SFXModel dataModel, String scCheck)
+	{
+		SFXEngine engine = new SFXEngine().createEngine(dataModel);
+		checkTotals(dataModel, engine, engine.evaluate(engine.loadState(engine.createState())), scCheck);
+	}
+
+	/** Values changed in the spell are priced by loading them again without compiling again */
+
+	private static void testChanged()
+	{
+		for (int iSeed=0; iSeed<_SEEDS / 10; ++iSeed)
+		{
+			Random random = new Random(iSeed);
+			SFXModel dataModel = createModel(iSeed);
+			SFXEngine engine = new SFXEngine().createEngine(dataModel);
+			int[] aiState = engine.createState();
+
+			for (int iChange=0; iChange<50; ++iChange)
+			{
+				// Fields added to a composite need the engine compiled again
+				int iFields = getFields(dataModel).size();
+				changeModel(dataModel, random);
+				if (iFields!=getFields(dataModel).size())
+				{
+					engine = new SFXEngine().createEngine(dataModel);
+					aiState = engine.createState();
+				}
+
+				checkTotals(dataModel, engine, engine.evaluate(engine.loadState(aiState)), "changed " + iSeed + " " + iChange);
+			}
+		}
+	}
+
+	/** Sweeping the costs of the fields gives for each row the totals of the state with those costs */
+
+	private static void testColumns()
+	{
+		for (int iSeed=0; iSeed<_SEEDS / 10; ++iSeed)
+		{
+			Random random = new Random(iSeed);
+			SFXModel dataModel = createModel(iSeed);
+			SFXEngine engine = new SFXEngine().createEngine(dataModel);
+			int[] aiState = engine.loadState(engine.createState());
+
+			SFXBase[] afieldSwept = new SFXBase[_SWEPT.length];
+			int[] aiInputSlots = new int[_SWEPT.length];
+			int[][] aaiInputs = new int[_SWEPT.length][_ROWS];
+
+			for (int iInput=0; iInput<_SWEPT.length; ++iInput)
+			{
+				afieldSwept[iInput] = dataModel.getField(_SWEPT[iInput]);
+				aiInputSlots[iInput] = engine.getSlot(afieldSwept[iInput]) + SFXEngine._COST;
+				for (int iRow=0; iRow<_ROWS; ++iRow) aaiInputs[iInput][iRow] = random.nextInt(41) - 20;
+			}
+
+			int iTotal = engine.getSlot(dataModel.getField("Total"));
+			int iSpecific = engine.getSlot(dataModel.getField("Specific"));
+			int[] aiResultSlots = {iTotal + SFXEngine._DN, iTotal + SFXEngine._FV, iSpecific + SFXEngine._DN, iSpecific + SFXEngine._FV};
+			int[][] aaiResults = engine.evaluateColumns(aiState, aiInputSlots, aaiInputs, aiResultSlots);
+
+			for (int iRow=0; iRow<_ROWS; ++iRow)
+			{
+				int[] aiRow = aiState.clone();
+				for (int iInput=0; iInput<_SWEPT.length; ++iInput) engine.setCost(aiRow, afieldSwept[iInput], aaiInputs[iInput][iRow]);
+				engine.evaluate(aiRow);
+
+				String scRow = engine.getTotalDN(aiRow) + "/" + engine.getTotalFV(aiRow) + " " + engine.getSpecificDN(aiRow) + "/" + engine.getSpecificFV(aiRow);
+				String scColumns = aaiResults[0][iRow] + "/" + aaiResults[1][iRow] + " " + aaiResults[2][iRow] + "/" + aaiResults[3][iRow];
+				checkEquals(scRow, scColumns, "row " + iSeed + " " + iRow);
+			}
+		}
+	}
+
+	/**
+	 * Sweeping the entries and units of the fields gives for sampled rows the
+	 * totals of the state with the costs of the fields set to them {the fields
+	 * priced from them e.g. speed, unreal and move are left as in the state}
+	 */
+
+	private static void testIndexes()
+	{
+		for (int iSeed=0; iSeed<_SEEDS / 10; ++iSeed)
+		{
+			Random random = new Random(iSeed);
+			SFXModel dataModel = createModel(iSeed);
+			SFXEngine engine = new SFXEngine().createEngine(dataModel);
+			int[] aiState = engine.loadState(engine.createState());
+
+			SFXBase[] afieldSwept = new SFXBase[_SWEPT.length];
+			int[][] aaiEntries = new int[_SWEPT.length][_ROWS];
+			int[][] aaiUnits = new int[_SWEPT.length][];
+
+			for (int iInput=0; iInput<_SWEPT.length; ++iInput)
+			{
+				afieldSwept[iInput] = dataModel.getField(_SWEPT[iInput]);
+				for (int iRow=0; iRow<_ROWS; ++iRow) aaiEntries[iInput][iRow] = random.nextInt(30);
+				if (!(afieldSwept[iInput] instanceof SFXValue)) continue;
+
+				// Units of casting are left as the spell has them
+				if ("Casting".equals(_SWEPT[iInput])) continue;
+				int iUnits = ((SFXValue) afieldSwept[iInput]).getMultiplierContent().length;
+				aaiUnits[iInput] = new int[_ROWS];
+				for (int iRow=0; iRow<_ROWS; ++iRow) aaiUnits[iInput][iRow] = random.nextInt(iUnits);
+			}
+
+			int iTotal = engine.getSlot(dataModel.getField("Total"));
+			int iSpecific = engine.getSlot(dataModel.getField("Specific"));
+			int[] aiResultSlots = {iTotal + SFXEngine._DN, iTotal + SFXEngine._FV, iSpecific + SFXEngine._DN, iSpecific + SFXEngine._FV};
+			int[][] aaiResults = engine.evaluateIndexes(aiState, afieldSwept, aaiEntries, aaiUnits, aiResultSlots);
+
+			for (int iSample=0; iSample<_SAMPLED; ++iSample)
+			{
+				int iRow = random.nextInt(_ROWS);
+				dataModel.beginBatch();
+				for (int iInput=0; iInput<_SWEPT.length; ++iInput)
+				{
+					SFXScalar field = (SFXScalar) afieldSwept[iInput];
+					field.setValue(aaiEntries[iInput][iRow] - field.getIndex());
+					if (null!=aaiUnits[iInput]) ((SFXValue) field).setMultiplierIndex(aaiUnits[iInput][iRow]);
+				}
+				dataModel.commit();
+
+				int[] aiRow = aiState.clone();
+				for (int iInput=0; iInput<_SWEPT.length; ++iInput) engine.setCost(aiRow, afieldSwept[iInput], afieldSwept[iInput].getCost());
+				engine.evaluate(aiRow);
+
+				String scRow = engine.getTotalDN(aiRow) + "/" + engine.getTotalFV(aiRow) + " " + engine.getSpecificDN(aiRow) + "/" + engine.getSpecificFV(aiRow);
+				String scColumns = aaiResults[0][iRow] + "/" + aaiResults[1][iRow] + " " + aaiResults[2][iRow] + "/" + aaiResults[3][iRow];
+				checkEquals(scRow, scColumns, "indexes " + iSeed + " " + iRow);
+			}
+		}
+
+		// Speed is priced from range rather than by its own index
+		SFXModel dataModel = new SFXModel().createModel();
+		SFXEngine engine = new SFXEngine().createEngine(dataModel);
+
+		try
+		{
+			engine.evaluateIndexes(engine.loadState(engine.createState()), new SFXBase[] {dataModel.getField("Speed")}, new int[][] {{1}}, null, new int[0]);
+			check(false, "speed by its own index");
+		}
+		catch (RuntimeException x)
+		{
+			check(true, "speed by its own index");
+		}
+	}
+}
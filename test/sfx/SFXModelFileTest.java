@@ -0,0 +1,163 @@
+package sfx;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * The model file {SFXM} and the numbers in its records: a spell read back is
+ * the spell written, a spell not changed writes no records and a file cut
+ * short or with a record longer than the file is not read.
+ */
+
+public class SFXModelFileTest extends SFXTest
+{
+	private static final int _SEEDS = 300;
+	private static final int[] _NUMBERS = {0, 1, -1, 63, -64, 64, -65, 127, 128, 8191, 8192, -8193, Integer.MAX_VALUE, Integer.MIN_VALUE};
+
+	public static void main(String[] ascArguments) throws IOException
+	{
+		testNumbers();
+		testEmpty();
+		testRoundTrip();
+		testCut();
+		testLengths();
+		testFile();
+		finish("SFXModelFileTest");
+	}
+
+	/** Numbers come back as written and -64 to 63 take a byte */
+
+	private static void testNumbers() throws IOException
+	{
+		for (int iNumber : _NUMBERS)
+		{
+			ByteArrayOutputStream stream = new ByteArrayOutputStream();
+			new SFXFieldOutput(stream).writeNumber(iNumber).flush();
+			SFXFieldInput input = new SFXFieldInput(new ByteArrayInputStream(stream.toByteArray()));
+			check(iNumber==input.readNumber(), "number " + iNumber);
+			if (iNumber>=-64 && iNumber<=63) check(1==stream.size(), "one byte for " + iNumber);
+			check(stream.size()<=5, "at most five bytes for " + iNumber);
+		}
+	}
+
+	/** A new spell holds only default values so it writes no records */
+
+	private static void testEmpty() throws IOException
+	{
+		SFXModel dataModel = new SFXModel().createModel();
+		byte[] abModel = SFXModelFile.getBytes(dataModel);
+		SFXModel modelRead = SFXModelFile.readModel(new ByteArrayInputStream(abModel));
+		checkEquals(describeModel(dataModel), describeModel(modelRead), "new spell read back");
+
+		dataModel.getField("Effect").setValue(2);
+		check(SFXModelFile.getBytes(dataModel).length>abModel.length, "a changed field is written");
+	}
+
+	/** A spell read back is the spell written and goes on changing the same */
+
+	private static void testRoundTrip() throws IOException
+	{
+		for (int iSeed=0; iSeed<_SEEDS; ++iSeed)
+		{
+			SFXModel dataModel = createModel(iSeed);
+			ByteArrayOutputStream stream = new ByteArrayOutputStream();
+			SFXModelFile.writeModel(dataModel, stream);
+			check(SFXModelFile.isModelFile(new ByteArrayInputStream(stream.toByteArray())), "model file " + iSeed);
+
+			SFXModel modelRead = SFXModelFile.readModel(new ByteArrayInputStream(stream.toByteArray()));
+			checkEquals(describeModel(dataModel), describeModel(modelRead), "read back " + iSeed);
+			checkEquals(dataModel.getField("Name").getValue(), modelRead.getField("Name").getValue(), "name " + iSeed);
+
+			SFXModel modelEditor = new SFXModel().createModel();
+			modelEditor.replaceContent(modelRead);
+			checkEquals(describeModel(dataModel), describeModel(modelEditor), "loaded into the editor " + iSeed);
+
+			dataModel.getField("Effect").setValue(3);
+			modelEditor.getField("Effect").setValue(3);
+			checkEquals(describeModel(dataModel), describeModel(modelEditor), "changed after reading " + iSeed);
+		}
+	}
+
+	/** A file cut short anywhere is turned down rather than read as another spell */
+
+	private static void testCut() throws IOException
+	{
+		byte[] abModel = SFXModelFile.getBytes(createModel(1));
+
+		for (int iLength=0; iLength<abModel.length; ++iLength)
+		{
+			try
+			{
+				SFXModelFile.readModel(new ByteArrayInputStream(Arrays.copyOf(abModel, iLength)));
+				check(false, "cut at " + iLength + " of " + abModel.length);
+			}
+			catch (IOException x)
+			{
+				check(true, "cut at " + iLength);
+			}
+		}
+	}
+
+	/** A record length below zero or past the end of the data is turned down rather than held */
+
+	private static void testLengths() throws IOException
+	{
+		int[] aiLengths = {-1, Integer.MIN_VALUE, 5000, Integer.MAX_VALUE};
+
+		for (int iLength : aiLengths)
+		{
+			ByteArrayOutputStream stream = new ByteArrayOutputStream();
+			new SFXFieldOutput(stream).writeNumber(iLength).writeText("Spell").flush();
+
+			try
+			{
+				new SFXFieldInput(new ByteArrayInputStream(stream.toByteArray())).readRecord();
+				check(false, "record length " + iLength);
+			}
+			catch (IOException x)
+			{
+				check(true, "record length " + iLength);
+			}
+		}
+
+		// Records longer than a block are read whole
+		byte[] abRecord = new byte[10000];
+		for (int iIndex=0; iIndex<abRecord.length; ++iIndex) abRecord[iIndex] = (byte) iIndex;
+		ByteArrayOutputStream stream = new ByteArrayOutputStream();
+		new SFXFieldOutput(stream).writeRecord(abRecord).flush();
+		check(Arrays.equals(abRecord, new SFXFieldInput(new ByteArrayInputStream(stream.toByteArray())).readRecord()), "long record");
+	}
+
+	/** Writing the file leaves no file beside it and writing again replaces it */
+
+	private static void testFile() throws IOException
+	{
+		File file = new File(createDirectory("SFXModelFileTest"), "Spell.sfx");
+		file.deleteOnExit();
+
+		for (int iSeed=0; iSeed<3; ++iSeed)
+		{
+			SFXModel dataModel = createModel(iSeed);
+			SFXModelFile.writeFile(SFXModelFile.getBytes(dataModel), file);
+			check(!SFXModelFile.getWritingFile(file).exists(), "nothing left beside the file " + iSeed);
+
+			FileInputStream stream = new FileInputStream(file);
+			SFXModel modelRead = null;
+
+			try
+			{
+				modelRead = SFXModelFile.readModel(stream);
+			}
+			finally
+			{
+				stream.close();
+			}
+
+			checkEquals(describeModel(dataModel), describeModel(modelRead), "file read back " + iSeed);
+		}
+	}
+}
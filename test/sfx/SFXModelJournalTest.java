@@ -0,0 +1,218 @@
+package sfx;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * The journal of the changes {SFXJ}: replaying it gives the spell as it was
+ * left, a journal cut short or with bytes that are not a change after the
+ * last change gives the spell as it was after one of the changes before, a
+ * journal that cannot be read is kept out of the way and the journal goes on
+ * from a spell replayed.
+ */
+
+public class SFXModelJournalTest extends SFXTest
+{
+	private static final int _SEEDS = 100;
+	private static final int _CUTS = 20;
+
+	private static File sm_directory = null;
+
+	public static void main(String[] ascArguments) throws IOException
+	{
+		sm_directory = createDirectory("SFXModelJournalTest");
+		testNone();
+		testReplay();
+		testCut();
+		testGarbage();
+		testKeep();
+		testContinue();
+		finish("SFXModelJournalTest");
+	}
+
+	private static File createFile(String scJournal)
+	{
+		File fileJournal = new File(sm_directory, scJournal + ".journal");
+		fileJournal.deleteOnExit();
+		return fileJournal;
+	}
+
+	/** No journal is written until the spell changes */
+
+	private static void testNone() throws IOException
+	{
+		File fileJournal = createFile("none");
+		check(null==SFXModelJournal.readJournal(fileJournal), "no journal");
+
+		SFXModelJournal journal = new SFXModelJournal().createJournal(new SFXModel().createModel(), fileJournal);
+		journal.close();
+		check(!journal.isWritten() && !fileJournal.exists(), "nothing written without a change");
+	}
+
+	/** The spell replayed is the spell left after changes, removals, batches and loading another spell */
+
+	private static void testReplay() throws IOException
+	{
+		for (int iSeed=0; iSeed<_SEEDS; ++iSeed)
+		{
+			Random random = new Random(iSeed);
+			File fileJournal = createFile("replay" + iSeed);
+			SFXModel dataModel = new SFXModel().createModel();
+			SFXModelJournal journal = new SFXModelJournal().createJournal(dataModel, fileJournal);
+
+			// Enough changes for some of the journals to be written again from the spell
+			int iChanges = 50 + random.nextInt(400);
+			for (int iChange=0; iChange<iChanges; ++iChange)
+			{
+				boolean zBatch = random.nextBoolean();
+				if (zBatch) dataModel.beginBatch();
+
+				try
+				{
+					int iPick = random.nextInt(60);
+					if (0==iPick) dataModel.replaceContent(createModel(1000 * iSeed + iChange));
+					else if (iPick<6) removeField(dataModel, random);
+					else if (iPick<10) dataModel.getField("Name").setValue("Spell " + iSeed + " " + iChange);
+					else changeModel(dataModel, random);
+				}
+				finally
+				{
+					if (zBatch) dataModel.commit();
+				}
+			}
+
+			journal.close();
+			SFXModel modelRead = SFXModelJournal.readJournal(fileJournal);
+			check(null!=modelRead, "journal read " + iSeed);
+			if (null==modelRead) continue;
+
+			checkEquals(describeModel(dataModel), describeModel(modelRead), "replayed " + iSeed);
+			checkEquals(dataModel.getField("Name").getValue(), modelRead.getField("Name").getValue(), "name " + iSeed);
+		}
+	}
+
+	/** A journal cut short anywhere after its snapshot gives the spell after one of the changes */
+
+	private static void testCut() throws IOException
+	{
+		for (int iSeed=0; iSeed<_SEEDS / 10; ++iSeed)
+		{
+			Random random = new Random(iSeed);
+			File fileJournal = createFile("cut" + iSeed);
+			SFXModel dataModel = new SFXModel().createModel();
+			SFXModelJournal journal = new SFXModelJournal().createJournal(dataModel, fileJournal);
+
+			// The first change writes the snapshot the rest are appended to
+			dataModel.getField("Name").setValue("Spell " + iSeed);
+			long lSnapshot = fileJournal.length();
+			Set<String> setSeen = new HashSet<String>();
+			setSeen.add(describeModel(dataModel));
+
+			for (int iChange=0; iChange<100; ++iChange)
+			{
+				if (changeModel(dataModel, random)) setSeen.add(describeModel(dataModel));
+			}
+
+			journal.close();
+			long lJournal = fileJournal.length();
+
+			for (int iCut=0; iCut<_CUTS; ++iCut)
+			{
+				RandomAccessFile fileCut = new RandomAccessFile(fileJournal, "rw");
+				fileCut.setLength(lSnapshot + (long) ((lJournal - lSnapshot) * random.nextDouble()));
+				fileCut.close();
+
+				SFXModel modelRead = SFXModelJournal.readJournal(fileJournal);
+				check(null!=modelRead && setSeen.contains(describeModel(modelRead)), "cut " + iSeed + " at " + fileJournal.length() + " of " + lJournal);
+				lJournal = fileJournal.length();
+			}
+		}
+	}
+
+	/** Bytes after the last change that are not a change {e.g. written again by an append that failed} end the journal */
+
+	private static void testGarbage() throws IOException
+	{
+		for (int iSeed=0; iSeed<_SEEDS / 10; ++iSeed)
+		{
+			Random random = new Random(iSeed);
+			File fileJournal = createFile("garbage" + iSeed);
+			SFXModel dataModel = createModel(iSeed);
+			SFXModelJournal journal = new SFXModelJournal().createJournal(dataModel, fileJournal);
+			for (int iChange=0; iChange<20; ++iChange) changeModel(dataModel, random);
+			dataModel.getField("Name").setValue("Garbage " + iSeed);
+			journal.close();
+
+			// Numbers too long, a name that is not text, a record longer than the file and bytes at random
+			byte[] abRandom = new byte[1 + random.nextInt(100)];
+			random.nextBytes(abRandom);
+			byte[] abNumber = new byte[8];
+			Arrays.fill(abNumber, (byte) 0xFF);
+			byte[][] aabGarbage = {abNumber, {0, 2, (byte) 0xC0, 0x41}, {0, 4, 'N', 'a', 'm', 'e', (byte) 0xFE, (byte) 0xFF, (byte) 0xFF, 0x0F}, abRandom};
+
+			for (byte[] abGarbage : aabGarbage)
+			{
+				File fileGarbage = createFile("garbage" + iSeed + "-" + abGarbage.length);
+				SFXModelFile.writeFile(Files.readAllBytes(fileJournal.toPath()), fileGarbage);
+				FileOutputStream stream = new FileOutputStream(fileGarbage, true);
+				stream.write(abGarbage);
+				stream.close();
+
+				SFXModel modelRead = SFXModelJournal.readJournal(fileGarbage);
+				check(null!=modelRead, "journal read with garbage " + iSeed + " " + abGarbage.length);
+				if (null!=modelRead) checkEquals(describeModel(dataModel), describeModel(modelRead), "garbage " + iSeed + " " + abGarbage.length);
+			}
+		}
+	}
+
+	/** A journal that cannot be read is moved beside it so a new journal does not write over it */
+
+	private static void testKeep() throws IOException
+	{
+		File fileJournal = createFile("keep");
+
+		for (int iKept=1; iKept<=2; ++iKept)
+		{
+			SFXModelFile.writeFile(new byte[] {'S', 'F', 'X', '?'}, fileJournal);
+
+			try
+			{
+				SFXModelJournal.readJournal(fileJournal);
+				check(false, "not a journal");
+			}
+			catch (IOException x)
+			{
+				File fileKept = SFXModelJournal.keepJournal(fileJournal);
+				check(null!=fileKept && fileKept.isFile() && !fileJournal.exists(), "kept " + iKept);
+				checkEquals(new File(fileJournal.getPath() + "." + iKept), fileKept, "kept as " + iKept);
+				if (null!=fileKept) fileKept.deleteOnExit();
+			}
+		}
+	}
+
+	/** A spell replayed keeps a journal of its own and the journal is removed once it is saved */
+
+	private static void testContinue() throws IOException
+	{
+		File fileJournal = createFile("continue");
+		SFXModel dataModel = createModel(7);
+		SFXModelJournal journal = new SFXModelJournal().createJournal(dataModel, fileJournal);
+		dataModel.getField("Effect").setValue(2);
+		journal.close();
+
+		SFXModel modelRead = SFXModelJournal.readJournal(fileJournal);
+		journal = new SFXModelJournal().createJournal(modelRead, fileJournal);
+		modelRead.getField("Name").setValue("After");
+		dataModel.getField("Name").setValue("After");
+		checkEquals(describeModel(dataModel), describeModel(SFXModelJournal.readJournal(fileJournal)), "continued");
+
+		check(journal.delete() && !fileJournal.exists(), "deleted");
+	}
+}
@@ -0,0 +1,105 @@
+package sfx;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The library of spells {SFXL}: each spell saved is listed and read back as
+ * it was saved, saving a spell of the same name replaces it and a library
+ * cut short is not opened.
+ */
+
+public class SFXModelLibraryTest extends SFXTest
+{
+	private static final int _SPELLS = 100;
+	private static final int _REPLACED = 20;
+
+	public static void main(String[] ascArguments) throws IOException
+	{
+		File file = new File(createDirectory("SFXModelLibraryTest"), "Spells.sfxl");
+		file.deleteOnExit();
+		SFXModelFile.getWritingFile(file).deleteOnExit();
+
+		testEmpty(file);
+		testSpells(file);
+		testMissing(file);
+		testCut(file);
+		finish("SFXModelLibraryTest");
+	}
+
+	/** A file not there yet is an empty library */
+
+	private static void testEmpty(File file) throws IOException
+	{
+		check(new SFXModelLibrary().openLibrary(file).getNames().isEmpty(), "empty library");
+	}
+
+	/** Spells are read back as saved from the library as opened again, the last saved of a name */
+
+	private static void testSpells(File file) throws IOException
+	{
+		SFXModelLibrary library = new SFXModelLibrary().openLibrary(file);
+		Map<String, String> mapSpells = new HashMap<String, String>();
+
+		// The last spells are saved again under the names of the first with other values
+		for (int iSpell=0; iSpell<_SPELLS + _REPLACED; ++iSpell)
+		{
+			SFXModel dataModel = createModel(iSpell);
+			dataModel.getField("Name").setValue("Spell " + iSpell % _SPELLS);
+			library.writeModel(dataModel);
+			mapSpells.put(dataModel.getField("Name").getValue(), describeModel(dataModel));
+		}
+
+		check(!SFXModelFile.getWritingFile(file).exists(), "nothing left beside the library");
+
+		library = new SFXModelLibrary().openLibrary(file);
+		List<String> listNames = new ArrayList<String>(mapSpells.keySet());
+		Collections.sort(listNames);
+		checkEquals(listNames, library.getNames(), "names");
+
+		for (String scName : library.getNames())
+		{
+			SFXModel modelRead = library.readModel(scName);
+			checkEquals(mapSpells.get(scName), describeModel(modelRead), "read back " + scName);
+			checkEquals(scName, modelRead.getField("Name").getValue(), "name " + scName);
+		}
+	}
+
+	private static void testMissing(File file) throws IOException
+	{
+		try
+		{
+			new SFXModelLibrary().openLibrary(file).readModel("No spell");
+			check(false, "spell not in the library");
+		}
+		catch (IOException x)
+		{
+			check(true, "spell not in the library");
+		}
+	}
+
+	/** A library cut short loses its trailer so it is not opened */
+
+	private static void testCut(File file) throws IOException
+	{
+		RandomAccessFile fileCut = new RandomAccessFile(file, "rw");
+		fileCut.setLength(file.length() - 3);
+		fileCut.close();
+
+		try
+		{
+			new SFXModelLibrary().openLibrary(file);
+			check(false, "library cut short");
+		}
+		catch (IOException x)
+		{
+			check(true, "library cut short");
+		}
+	}
+}
@@ -0,0 +1,217 @@
+package sfx;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * The model writer: the commands waiting are applied in the one wave and
+ * leave the spell as the same commands applied directly in a batch, and a
+ * change of units followed by another of the same field is dropped.
+ */
+
+public class SFXModelWriterTest extends SFXTest implements SFXModelListener
+{
+	private static final int _SEEDS = 50;
+
+	private SFXBase m_fieldTotal = null;
+	private int m_iWaves = 0;
+
+	public static void main(String[] ascArguments) throws InterruptedException
+	{
+		testMerge();
+		testBatch();
+		testCommands();
+		finish("SFXModelWriterTest");
+	}
+
+	/** Only a change of units followed by a change of units of the same field is merged */
+
+	private static void testMerge()
+	{
+		SFXModel dataModel = new SFXModel().createModel();
+		SFXBase fieldRange = dataModel.getField("Range");
+		SFXBase fieldDuration = dataModel.getField("Duration");
+
+		check(new SFXCommandMultiplier(fieldRange, 1).mergeCommand(new SFXCommandMultiplier(fieldRange, 2)), "units of the same field");
+		check(!new SFXCommandMultiplier(fieldRange, 1).mergeCommand(new SFXCommandMultiplier(fieldDuration, 2)), "units of another field");
+		check(!new SFXCommandMultiplier(fieldRange, 1).mergeCommand(new SFXCommandValue(fieldRange, 2)), "units then a value");
+		check(!new SFXCommandValue(fieldRange, 1).mergeCommand(new SFXCommandValue(fieldRange, 1)), "value steps are each applied");
+	}
+
+	/** Commands waiting for the writer are applied in one wave with the same outcome as one at a time */
+
+	private static void testBatch() throws InterruptedException
+	{
+		SFXModel dataModel = new SFXModel().createModel();
+		SFXModelWriterTest listener = new SFXModelWriterTest();
+		listener.m_fieldTotal = dataModel.getField("Total");
+		dataModel.addListener(listener);
+
+		SFXModelWriter writer = dataModel.getWriter();
+		CountDownLatch latchHold = holdWriter(writer);
+		for (int iStep=0; iStep<10; ++iStep) writer.submit(new SFXCommandValue(dataModel.getField("Effect"), 1));
+		for (int iUnits=0; iUnits<5; ++iUnits) writer.submit(new SFXCommandMultiplier(dataModel.getField("Range"), iUnits));
+		writer.submit(new SFXCommandValue(dataModel.getField("Range"), 3));
+		latchHold.countDown();
+		waitWriter(writer);
+
+		SFXModel modelDirect = new SFXModel().createModel();
+		for (int iStep=0; iStep<10; ++iStep) modelDirect.getField("Effect").setValue(1);
+		((SFXValue) modelDirect.getField("Range")).setMultiplierIndex(4);
+		modelDirect.getField("Range").setValue(3);
+
+		checkEquals(describeModel(modelDirect), describeModel(dataModel), "batch");
+		checkEquals(1, listener.m_iWaves, "one wave for the batch");
+	}
+
+	/**
+	 * Random commands applied on the writer leave the spell as applied directly in a batch
+	 * {not always as applied one at a time, a field of the exclusive area set in the batch
+	 * after another of the area is not reset by it at the commit}
+	 */
+
+	private static void testCommands() throws InterruptedException
+	{
+		for (int iSeed=0; iSeed<_SEEDS; ++iSeed)
+		{
+			Random random = new Random(iSeed);
+			SFXModel dataModel = createModel(iSeed);
+			SFXModel modelDirect = createModel(iSeed);
+			SFXModelWriter writer = dataModel.getWriter();
+
+			for (int iRun=0; iRun<10; ++iRun)
+			{
+				// The fields are the same in both until the writer adds or removes one
+				List<SFXBase> listFields = getFields(dataModel);
+				List<SFXBase> listDirect = getFields(modelDirect);
+				CountDownLatch latchHold = holdWriter(writer);
+				modelDirect.beginBatch();
+
+				for (int iCommand=0; iCommand<20; ++iCommand)
+				{
+					int iField = random.nextInt(listFields.size());
+					SFXBase field = listFields.get(iField);
+					SFXBase fieldDirect = listDirect.get(iField);
+					if (field instanceof SFXComposite || field instanceof SFXFieldFactory) continue;
+
+					int iPick = random.nextInt(4);
+					int iValue = random.nextInt(5) - 2;
+
+					try
+					{
+						if (0==iPick)
+						{
+							writer.submit(new SFXCommandValue(field, iValue));
+							new SFXCommandValue(fieldDirect, iValue).execute();
+						}
+						else if (1==iPick && field instanceof SFXValue)
+						{
+							// Units merged on the writer leave the last as applying each of them does
+							iValue = random.nextInt(6);
+							writer.submit(new SFXCommandMultiplier(field, iValue));
+							new SFXCommandMultiplier(fieldDirect, iValue).execute();
+						}
+						else if (2==iPick && field instanceof SFXValueModifier)
+						{
+							String scValue = random.nextBoolean() ? "DN" : "FV";
+							writer.submit(new SFXCommandText(field, scValue));
+							new SFXCommandText(fieldDirect, scValue).execute();
+						}
+					}
+					catch (RuntimeException x)
+					{
+						// The writer turns down the same values and carries on
+					}
+				}
+
+
+				if (random.nextInt(3)==0)
+				{
+					// Adding a field ends the run as the fields are not the same after it
+					SFXBase field = listFields.get(random.nextInt(listFields.size()));
+					if (field instanceof SFXFieldCommunity || field instanceof SFXFieldGesture || field instanceof SFXFieldComponent)
+					{
+						writer.submit(new SFXCommandDuplicate(field));
+						new SFXCommandDuplicate(listDirect.get(listFields.indexOf(field))).execute();
+					}
+				}
+
+				modelDirect.commit();
+				latchHold.countDown();
+				waitWriter(writer);
+				checkEquals(describeModel(modelDirect), describeModel(dataModel), "commands " + iSeed + " " + iRun);
+			}
+		}
+	}
+
+	/** Hold the writer until the latch is let go so the commands sent meanwhile are all waiting for it */
+
+	private static CountDownLatch holdWriter(SFXModelWriter writer)
+	{
+		final CountDownLatch latchHold = new CountDownLatch(1);
+		writer.submit(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				try
+				{
+					latchHold.await();
+				}
+				catch (InterruptedException x)
+				{
+					Thread.currentThread().interrupt();
+				}
+			}
+		});
+
+		return latchHold;
+	}
+
+	/** Wait for the writer to apply the commands before */
+
+	private static void waitWriter(SFXModelWriter writer) throws InterruptedException
+	{
+		final CountDownLatch latchDone = new CountDownLatch(1);
+		writer.submit(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				latchDone.countDown();
+			}
+		});
+
+		latchDone.await();
+	}
+
+	/* ======================================================================
+	   Model listener counting the waves that reach the total
+	   ====================================================================== */
+
+	@Override
+	public boolean addField(SFXBase fieldAdded)
+	{
+		return true;
+	}
+
+	@Override
+	public boolean changedField(SFXBase field)
+	{
+		if (field==m_fieldTotal) ++m_iWaves;
+		return true;
+	}
+
+	@Override
+	public boolean replaceField(SFXBase fieldReplace, SFXBase fieldWith)
+	{
+		return true;
+	}
+
+	@Override
+	public boolean removeField(SFXBase fieldRemoved)
+	{
+		return true;
+	}
+}
@@ -0,0 +1,170 @@
+package sfx;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * What the tests share: spells made by changes picked at random as a user
+ * would make them, a description of a spell to compare and the count of the
+ * checks that failed.
+ *
+ * Each test is a program of its own run with the classes of the sources and
+ * the rules on the class path.  It prints the checks that fail and ends with
+ * the status 1 if any did.
+ *
+ *   javac -d classes src/sfx/*.java test/sfx/*.java
+ *   java -cp classes:src sfx.SFXModelFileTest
+ */
+
+class SFXTest
+{
+	private static final String[] _FIELDS = {"Name", "Effect", "Range", "Speed", "Duration", "SubMandatory", "HalfMandatory", "Casting", "Mandatory", "AreaEffect", "MultiTarget", "MultiAttribute", "ChangeTarget", "VariableEffect", "VariableDuration", "Apportation", "Maintenance", "Focus", "Charges", "Optional", "Community", "Components", "Concentration", "Gestures", "Incantation", "RelatedSkill", "Other", "Unreal", "Modifiers", "Fraction", "Total", "Skill", "ConcentrationAdd", "Reception", "Trance", "Lock", "Countenance", "Specific"};
+	private static final int _CHANGES = 60;
+
+	private static int sm_iChecks = 0;
+	private static int sm_iFailed = 0;
+
+	/** A spell made by changes picked at random from the seed */
+
+	static SFXModel createModel(int iSeed)
+	{
+		Random random = new Random(iSeed);
+		SFXModel dataModel = new SFXModel().createModel();
+		for (int iChange=0; iChange<_CHANGES; ++iChange) changeModel(dataModel, random);
+		dataModel.getField("Name").setValue("Spell " + iSeed);
+		return dataModel;
+	}
+
+	/** Make a change at random to a field the user can set {false when the change picked did not fit the field} */
+
+	static boolean changeModel(SFXModel dataModel, Random random)
+	{
+		List<SFXBase> listFields = getFields(dataModel);
+		SFXBase field = listFields.get(random.nextInt(listFields.size()));
+		int iChange = random.nextInt(6);
+		if (!isSet(field)) return false;
+
+		try
+		{
+			if (iChange<2) field.setValue(random.nextInt(5) - 2);
+			else if (2==iChange && field instanceof SFXValue) ((SFXValue) field).setMultiplierIndex(random.nextInt(6));
+			else if (3==iChange && field instanceof SFXFractionUnreal) field.setValue("LEVEL " + 25 * random.nextInt(4));
+			else if (3==iChange && field instanceof SFXFraction) field.setValue(Float.toString(0.33f + random.nextInt(30) / 100f));
+			else if (4==iChange && field instanceof SFXValueFollows) field.setValue(random.nextBoolean() ? "ENABLE" : "DISABLE");
+			else if (4==iChange && field instanceof SFXValueModifier) field.setValue(random.nextBoolean() ? "DN" : "FV");
+			else if (4==iChange && field instanceof SFXDouble && field.m_scField.equals("Others")) field.setValue((random.nextBoolean() ? "DN " : "FV ") + random.nextInt(5));
+			else if (5==iChange && isRepeated(field)) return new SFXCommandDuplicate(field).execute();
+			else if (5==iChange && (field instanceof SFXFieldMaintenance || field instanceof SFXFieldFocus || field instanceof SFXFieldConcentrationAdd)) field.setValue(random.nextBoolean() ? "1" : "0");
+			else return false;
+		}
+		catch (RuntimeException x)
+		{
+			// A value the rules do not have for the field is turned down as in the editor
+			return false;
+		}
+
+		return true;
+	}
+
+	/** Remove a field of a composite at random leaving at least one {false when the field picked cannot be removed} */
+
+	static boolean removeField(SFXModel dataModel, Random random)
+	{
+		List<SFXBase> listFields = getFields(dataModel);
+		SFXBase field = listFields.get(random.nextInt(listFields.size()));
+		if (!isRepeated(field) || ((SFXComposite) field.getParent()).getComposition().size()<2) return false;
+		return new SFXCommandRemove(field).execute();
+	}
+
+	/** The fields of the spell with the fields of its composites after each composite */
+
+	static List<SFXBase> getFields(SFXModel dataModel)
+	{
+		List<SFXBase> listFields = new ArrayList<SFXBase>();
+
+		for (String scField : _FIELDS)
+		{
+			SFXBase field = dataModel.getField(scField);
+			listFields.add(field);
+			if (field instanceof SFXComposite) listFields.addAll(((SFXComposite) field).getComposition());
+		}
+
+		return listFields;
+	}
+
+	/** All of the spell a user sees {values, costs, comments and totals} one field a line */
+
+	static String describeModel(SFXModel dataModel)
+	{
+		StringBuilder builder = new StringBuilder();
+
+		for (SFXBase field : getFields(dataModel))
+		{
+			builder.append(field.toString()).append(" cost ").append(field.getCost());
+			if (field instanceof SFXValueModifier) builder.append(" comment ").append(((SFXValueModifier) field).getComment());
+			if (field instanceof SFXFieldCommunity) builder.append(" initial ").append(((SFXFieldCommunity) field).isInitial());
+			if (field instanceof SFXCompositeComponents) builder.append(" limited ").append(((SFXCompositeComponents) field).isLimited());
+			if (field instanceof SFXFieldModifiers) builder.append(" limited ").append(((SFXFieldModifiers) field).isLimited());
+			builder.append('\n');
+		}
+
+		SFXDouble fieldTotal = (SFXDouble) dataModel.getField("Total");
+		SFXDouble fieldSpecific = (SFXDouble) dataModel.getField("Specific");
+		builder.append("Total ").append(fieldTotal.getValueDN()).append('/').append(fieldTotal.getValueFV());
+		builder.append(" Specific ").append(fieldSpecific.getValueDN()).append('/').append(fieldSpecific.getValueFV()).append('\n');
+		return builder.toString();
+	}
+
+	/** A directory of its own for the files of a test */
+
+	static File createDirectory(String scTest)
+	{
+		File directory = new File(System.getProperty("java.io.tmpdir"), scTest + "-" + System.nanoTime());
+		directory.mkdirs();
+		directory.deleteOnExit();
+		return directory;
+	}
+
+	static void check(boolean zPassed, String scCheck)
+	{
+		++sm_iChecks;
+		if (zPassed) return;
+
+		++sm_iFailed;
+		System.out.println("FAILED " + scCheck);
+	}
+
+	static void checkEquals(Object objectExpected, Object objectActual, String scCheck)
+	{
+		check(objectExpected.equals(objectActual), scCheck);
+		if (!objectExpected.equals(objectActual)) System.out.println("expected\n" + objectExpected + "\nactual\n" + objectActual);
+	}
+
+	/** Report the checks and end the test {the model writer threads do not hold it up} */
+
+	static void finish(String scTest)
+	{
+		System.out.println(scTest + " " + sm_iChecks + " checks, " + sm_iFailed + " failed");
+		System.exit(0==sm_iFailed ? 0 : 1);
+	}
+
+	/** Fields the user sets {calculated fields and composites are not} */
+
+	private static boolean isSet(SFXBase field)
+	{
+		if (field instanceof SFXComposite || field instanceof SFXFieldFactory) return false;
+		if (field instanceof SFXFieldSubMandatory || field instanceof SFXFieldMandatory || field instanceof SFXFieldOptional) return false;
+		if (field instanceof SFXFieldModifiers || field instanceof SFXFieldTotal || field instanceof SFXFieldTotalN) return false;
+		return true;
+	}
+
+	/** Fields a composite holds as many of as the user adds */
+
+	private static boolean isRepeated(SFXBase field)
+	{
+		if (!(field.getParent() instanceof SFXComposite)) return false;
+		return field instanceof SFXFieldCommunity || field instanceof SFXFieldComponent || field instanceof SFXFieldGesture;
+	}
+}